@@ -0,0 +1,283 @@
+import java.util.ArrayList;
+
+/**
+ * Stream of the events of a single battle (damage dealt, statuses applied, switches, etc.)
+ *
+ * A stream is bound to the thread running its battle with bind(), after which the simulator's
+ * events on that thread are written to it. Events are written to a ring buffer of reused Event
+ * objects, and are passed to the subscribers of the stream in order when flush() is called (or
+ * when the buffer is full). When no stream is bound to a thread, its events are ignored without
+ * building anything, which is how searching avoids the cost of recording events.
+ */
+public class BattleEvents {
+
+	public enum Type {
+		/* A new turn started. [amount] is the turn number */
+		TURN,
+		/* [pokemon] was switched with [other] */
+		SWITCH,
+		/* [pokemon] used [move] */
+		MOVE_USED,
+		RECHARGED, FULLY_PARALYZED, FROZEN_SOLID, WOKE_UP, ASLEEP, CONFUSED,
+		/* [pokemon] hurt itself in confusion for [amount] */
+		CONFUSION_DAMAGE,
+		CHARGING,
+		/* The attack of [pokemon] missed */
+		MISS,
+		/* [pokemon] landed a critical hit */
+		CRIT,
+		/* [pokemon] lost [amount] hp, leaving it with [hp]/[maxHp] */
+		DAMAGE,
+		/* The substitute of [pokemon] took [amount] damage, leaving it with [hp] */
+		SUBSTITUTE_DAMAGE,
+		/* [pokemon] has stored [amount] damage with bide */
+		BIDE_STORED,
+		/* The attack had no effect on [pokemon], or was super/not very effective against it */
+		NO_EFFECT, SUPER_EFFECTIVE, NOT_VERY_EFFECTIVE,
+		/* [pokemon] got [condition], for [amount] turns in the case of sleep and confusion */
+		STATUS_APPLIED,
+		/* The [stat] stage of [pokemon] changed by [amount] to [stage] */
+		STAT_CHANGE,
+		/* [pokemon] transformed into [other] */
+		TRANSFORM,
+		/* [pokemon] made a substitute with [amount] hp */
+		SUBSTITUTE,
+		/* [pokemon] was hurt by its [condition] (burn or poison) for [amount], leaving it with [hp]/[maxHp] */
+		RESIDUAL_DAMAGE,
+		/* [pokemon] fainted */
+		FAINTED
+	}
+
+	/**
+	 * A single event. Events are reused once they have been passed to the subscribers,
+	 * so subscribers must not keep references to them. Fields which don't apply to the
+	 * type of the event (see Type) are null or 0.
+	 */
+	public static class Event {
+		public Type type;
+		/** Species of the pokemon the event happened to */
+		public String pokemon;
+		public String other;
+		public Move move;
+		public Pokemon.StatusCondition condition;
+		public Pokemon.Stat stat;
+		public int amount, hp, maxHp, stage;
+
+		private void set(Type type, String pokemon) {
+			this.type = type;
+			this.pokemon = pokemon;
+			other = null;
+			move = null;
+			condition = null;
+			stat = null;
+			amount = 0;
+			hp = 0;
+			maxHp = 0;
+			stage = 0;
+		}
+
+		/** Describes the event the way it is shown to players */
+		public String toString() {
+			switch (type) {
+				case TURN:
+					return "Turn #" + amount;
+				case SWITCH:
+					return pokemon + " was switched with " + other;
+				case MOVE_USED:
+					return pokemon + " used " + move.name;
+				case RECHARGED:
+					return pokemon + " recharged";
+				case FULLY_PARALYZED:
+					return pokemon + " is fully paralyzed";
+				case FROZEN_SOLID:
+					return pokemon + " is frozen solid";
+				case WOKE_UP:
+					return pokemon + " woke up";
+				case ASLEEP:
+					return pokemon + " is asleep";
+				case CONFUSED:
+					return pokemon + " is confused";
+				case CONFUSION_DAMAGE:
+					return pokemon + " hurt itself in confusion (" + amount + ")";
+				case CHARGING:
+					return pokemon + " began charging ";
+				case MISS:
+					return "The attack missed!";
+				case CRIT:
+					return "Critical hit!";
+				case DAMAGE:
+					return pokemon + " lost " + amount + " hp (" + hp + "/" + maxHp + ")";
+				case SUBSTITUTE_DAMAGE:
+					return pokemon + "'s substitute took " + amount + " damage (" + hp + ")";
+				case BIDE_STORED:
+					return pokemon + " is storing damage " + amount;
+				case NO_EFFECT:
+					return "It didn't affect " + pokemon;
+				case SUPER_EFFECTIVE:
+					return "It's super effective!";
+				case NOT_VERY_EFFECTIVE:
+					return "It's not very effective";
+				case STATUS_APPLIED:
+					switch (condition) {
+						case FREEZE:
+							return pokemon + " was frozen";
+						case PARALYZE:
+							return pokemon + " was paralyzed";
+						case CONFUSE:
+							return pokemon + " was confused (" + amount + ")";
+						case BURN:
+							return pokemon + " was burned";
+						case POISON:
+							return pokemon + " was poisoned";
+						case BADLY_POISON:
+							return pokemon + " was badly poisoned";
+						case SLEEP:
+							return pokemon + " fell asleep (" + amount + ")";
+					}
+					break;
+				case STAT_CHANGE:
+					return pokemon + "'s " + stat + " changed by " + amount + " (" + stage + ")";
+				case TRANSFORM:
+					return pokemon + " transformed into " + other;
+				case SUBSTITUTE:
+					return pokemon + " made a substitute (" + amount + ")";
+				case RESIDUAL_DAMAGE:
+					return pokemon + " was hurt by " + (condition == Pokemon.StatusCondition.BURN ? "burn" : 
+						condition == Pokemon.StatusCondition.BADLY_POISON ? "badly poison" : "poison") + 
+						" (" + amount + ", " + hp + "/" + maxHp + ")";
+				case FAINTED:
+					return pokemon + " fainted";
+			}
+			return type.toString();
+		}
+	}
+
+	/** Receives the events of the streams it subscribes to */
+	public static interface Subscriber {
+		public void onEvent(Event e);
+	}
+
+	/** Number of events buffered before they are passed to the subscribers */
+	public static final int BUFFER_SIZE = 64;
+
+	/** The stream bound to each thread, or null if the thread's events are ignored */
+	private static final ThreadLocal<BattleEvents> current = new ThreadLocal<>();
+
+	private Event[] buffer;
+	/** The buffered events are buffer[start], buffer[start+1], ... (wrapping around), [size] of them */
+	private int start, size;
+	private ArrayList<Subscriber> subscribers = new ArrayList<>();
+
+	public BattleEvents() {
+		buffer = new Event[BUFFER_SIZE];
+		for (int i = 0; i < buffer.length; i++) {
+			buffer[i] = new Event();
+		}
+	}
+
+	public void subscribe(Subscriber s) {
+		subscribers.add(s);
+	}
+
+	public void unsubscribe(Subscriber s) {
+		subscribers.remove(s);
+	}
+
+	/**
+	 * Writes the events of the current thread to [events] (or ignores them if [events] is null),
+	 * and returns the stream they were written to before
+	 */
+	public static BattleEvents bind(BattleEvents events) {
+		BattleEvents previous = current.get();
+		current.set(events);
+		return previous;
+	}
+
+	/** Passes every buffered event to the subscribers in the order they happened */
+	public void flush() {
+		while (size > 0) {
+			Event e = buffer[start];
+			for (int i = 0; i < subscribers.size(); i++) {
+				subscribers.get(i).onEvent(e);
+			}
+			start = (start + 1) % buffer.length;
+			size--;
+		}
+	}
+
+	/** Returns the next unused event, passing the buffered events on first if the buffer is full */
+	private Event next(Type type, String pokemon) {
+		if (size == buffer.length)
+			flush();
+		Event e = buffer[(start + size) % buffer.length];
+		size++;
+		e.set(type, pokemon);
+		return e;
+	}
+
+	/* Methods which write an event to the stream bound to the current thread, if there is one */
+
+	public static void emit(Type type, String pokemon) {
+		BattleEvents events = current.get();
+		if (events != null)
+			events.next(type, pokemon);
+	}
+
+	public static void emit(Type type, String pokemon, int amount) {
+		BattleEvents events = current.get();
+		if (events != null)
+			events.next(type, pokemon).amount = amount;
+	}
+
+	public static void emit(Type type, String pokemon, int amount, int hp, int maxHp) {
+		BattleEvents events = current.get();
+		if (events != null) {
+			Event e = events.next(type, pokemon);
+			e.amount = amount;
+			e.hp = hp;
+			e.maxHp = maxHp;
+		}
+	}
+
+	public static void emit(Type type, String pokemon, String other) {
+		BattleEvents events = current.get();
+		if (events != null)
+			events.next(type, pokemon).other = other;
+	}
+
+	public static void moveUsed(String pokemon, Move move) {
+		BattleEvents events = current.get();
+		if (events != null)
+			events.next(Type.MOVE_USED, pokemon).move = move;
+	}
+
+	public static void statusApplied(String pokemon, Pokemon.StatusCondition condition, int turns) {
+		BattleEvents events = current.get();
+		if (events != null) {
+			Event e = events.next(Type.STATUS_APPLIED, pokemon);
+			e.condition = condition;
+			e.amount = turns;
+		}
+	}
+
+	public static void residualDamage(String pokemon, Pokemon.StatusCondition condition, int damage, int hp, int maxHp) {
+		BattleEvents events = current.get();
+		if (events != null) {
+			Event e = events.next(Type.RESIDUAL_DAMAGE, pokemon);
+			e.condition = condition;
+			e.amount = damage;
+			e.hp = hp;
+			e.maxHp = maxHp;
+		}
+	}
+
+	public static void statChanged(String pokemon, Pokemon.Stat stat, int change, int stage) {
+		BattleEvents events = current.get();
+		if (events != null) {
+			Event e = events.next(Type.STAT_CHANGE, pokemon);
+			e.stat = stat;
+			e.amount = change;
+			e.stage = stage;
+		}
+	}
+}
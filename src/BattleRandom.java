@@ -0,0 +1,44 @@
+import java.util.SplittableRandom;
+
+/**
+ * Source of the random numbers used by the simulator (damage rolls, accuracy checks,
+ * team generation, playouts, etc.)
+ *
+ * Each thread has its own generator, so threads searching in parallel never contend
+ * for one. A battle played on a single thread can be replayed exactly by binding a
+ * generator created with the same seed before playing it, as long as the same number
+ * of random numbers is drawn (e.g. searches are limited by iterations rather than time).
+ */
+public class BattleRandom {
+
+	/** The generator of each thread, which is seeded randomly unless bind() is called */
+	private static final ThreadLocal<SplittableRandom> current = ThreadLocal.withInitial(SplittableRandom::new);
+
+	/**
+	 * Draws the random numbers of the current thread from [random], and returns the
+	 * generator they were drawn from before
+	 */
+	public static SplittableRandom bind(SplittableRandom random) {
+		SplittableRandom previous = current.get();
+		current.set(random);
+		return previous;
+	}
+
+	/**
+	 * Returns a new generator split off the generator of the current thread, for another
+	 * thread to bind. Its numbers are determined by the seed of the current thread's generator.
+	 */
+	public static SplittableRandom split() {
+		return current.get().split();
+	}
+
+	/** Returns a random double in [0, 1), like Math.random() */
+	public static double nextDouble() {
+		return current.get().nextDouble();
+	}
+
+	/** Returns a random int in [0, bound) */
+	public static int nextInt(int bound) {
+		return current.get().nextInt(bound);
+	}
+}
@@ -0,0 +1,177 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Queue of game states waiting to be evaluated by the policy and valuation
+ * networks, shared by any number of threads (e.g. threads searching the same 
+ * tree, or threads playing different games).
+ * 
+ * A thread calling evaluate() adds its state to the queue and waits. Once 
+ * [batchSize] states are waiting, or a waiting thread has waited for [maxWaitNanos],
+ * that thread takes every waiting state and evaluates them as a single batch 
+ * (see NeuralNet.forward_prop_batch), then hands each result back to the thread 
+ * waiting for it. There is no dedicated evaluation thread.
+ */
+public class EvaluationQueue {
+	
+	/** Outputs of the policy and valuation networks for a single game state */
+	public static class Evaluation {
+		/** Values of the output nodes of the policy network */
+		public double[] policy;
+		/** Value of the output node of the valuation network, or 0 if there is no valuation network */
+		public double value;
+	}
+	
+	/** A game state waiting to be evaluated */
+	private static class Request {
+		/** Features of the game state (see NeuralNet.input) */
+		public double[] input;
+		public Evaluation evaluation;
+		/** What went wrong if the batch containing this request could not be evaluated */
+		public Throwable failure;
+		/** true once a thread has taken this request to evaluate it */
+		public boolean taken;
+		
+		public Request(double[] input) {
+			this.input = input;
+		}
+	}
+	
+	private NeuralNet policyNetwork;
+	private NeuralNet valuationNetwork;
+	private int batchSize;
+	private long maxWaitNanos;
+	
+	/** Requests that no thread has taken yet, in the order they were added */
+	private List<Request> pending;
+	
+	/**
+	 * [valuationNet] may be null, in which case every evaluation has value 0
+	 * 
+	 * [batchSize] should usually be the number of threads using the queue, since 
+	 * a batch can't fill up with more states than there are threads waiting
+	 */
+	public EvaluationQueue(NeuralNet policyNet, NeuralNet valuationNet, int batchSize, long maxWaitNanos) {
+		this.policyNetwork = policyNet;
+		this.valuationNetwork = valuationNet;
+		this.batchSize = batchSize;
+		this.maxWaitNanos = maxWaitNanos;
+		this.pending = new ArrayList<Request>();
+	}
+	
+	/**
+	 * Returns the evaluation of [gs] by the policy and valuation networks,
+	 * waiting for it to be evaluated as part of a batch
+	 */
+	public Evaluation evaluate(GameState gs) {
+		double[] input = new double[NeuralNet.INPUT_SIZE];
+		NeuralNet.input(gs, input);
+		return evaluate(input);
+	}
+	
+	/**
+	 * Same as evaluate(GameState), for a state which is already encoded (see NeuralNet.input).
+	 * [input] must not be modified until this returns.
+	 * 
+	 * Throws a RuntimeException if the batch containing [input] could not be evaluated,
+	 * in every thread waiting for that batch.
+	 */
+	public Evaluation evaluate(double[] input) {
+		Request request = new Request(input);
+		List<Request> batch = null;
+		
+		synchronized (this) {
+			pending.add(request);
+			if (pending.size() >= batchSize) {
+				batch = takePending();
+			}
+			else {
+				long deadline = System.nanoTime() + maxWaitNanos;
+				long remaining = maxWaitNanos;
+				while (!request.taken && remaining > 0) {
+					waitFor(remaining);
+					remaining = deadline - System.nanoTime();
+				}
+				// Nobody else filled the batch in time, so evaluate whatever is waiting
+				if (!request.taken) {
+					batch = takePending();
+				}
+			}
+		}
+		
+		if (batch != null) {
+			evaluateBatch(batch);
+		}
+		
+		synchronized (this) {
+			while (request.evaluation == null && request.failure == null) {
+				waitFor(0);
+			}
+		}
+		if (request.failure != null) {
+			throw new RuntimeException("Error evaluating batch", request.failure);
+		}
+		return request.evaluation;
+	}
+	
+	/** Take every pending request. Must be called while holding the lock on this queue. */
+	private List<Request> takePending() {
+		List<Request> batch = pending;
+		pending = new ArrayList<Request>();
+		for (Request r : batch) {
+			r.taken = true;
+		}
+		return batch;
+	}
+	
+	/** 
+	 * Evaluate every request in [batch] and wake up the threads waiting for them.
+	 * The networks are only read, so several batches can be evaluated at once.
+	 * If the networks throw, the failure is recorded on every request instead.
+	 */
+	private void evaluateBatch(List<Request> batch) {
+		double[][] inputs = new double[batch.size()][];
+		for (int b = 0; b < inputs.length; b++) {
+			inputs[b] = batch.get(b).input;
+		}
+		
+		double[][] policyOutputs, valuationOutputs;
+		try {
+			policyOutputs = policyNetwork.forward_prop_batch(inputs);
+			valuationOutputs = (valuationNetwork != null ? valuationNetwork.forward_prop_batch(inputs) : null);
+		}
+		catch (Throwable t) {
+			synchronized (this) {
+				for (Request r : batch) {
+					r.failure = t;
+				}
+				notifyAll();
+			}
+			return;
+		}
+		
+		synchronized (this) {
+			for (int b = 0; b < batch.size(); b++) {
+				Evaluation e = new Evaluation();
+				e.policy = policyOutputs[b];
+				e.value = (valuationOutputs != null ? valuationOutputs[b][0] : 0);
+				batch.get(b).evaluation = e;
+			}
+			notifyAll();
+		}
+	}
+	
+	/** 
+	 * Wait on this queue for at most [nanos] nanoseconds (or until notified if [nanos] is 0).
+	 * Must be called while holding the lock on this queue.
+	 */
+	private void waitFor(long nanos) {
+		try {
+			wait(nanos / 1000000, (int)(nanos % 1000000));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for evaluation");
+		}
+	}
+}
@@ -2,6 +2,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -60,18 +62,30 @@ public class GameState {
     	}
 
     	// Opponent switched to an unknown pokemon
-    	p2_pokemon.put(new_p2_active, new HashSet<>());
+    	p2_pokemon.put(new_p2_active, new LinkedHashSet<>());
     	p2_active = new_p2_active;
     }
     
+    /**
+     * Returns the moves we know the opponent's active pokemon has. If it has transformed,
+     * these are the known moves of the pokemon it transformed from, or no moves if that
+     * pokemon isn't one of the keys of [p2_pokemon].
+     */
+    public HashSet<Move> p2ActiveKnownMoves() {
+    	HashSet<Move> moves = p2_pokemon.get(p2_active);
+    	if (moves == null && p2_active.status.transformedFrom != null)
+    		moves = p2_pokemon.get(p2_active.status.transformedFrom);
+    	return (moves != null ? moves : new LinkedHashSet<>());
+    }
+    
     /** Default game state which describes the game as it begins. */
     public GameState(Team p1_team, Pokemon p2_active) {
     	/* Initialize variables. */
-    	p2_pokemon = new HashMap<>();
+    	p2_pokemon = new LinkedHashMap<>();
     	/* Set up the current field. */
     	this.p1_team = p1_team;
     	this.p2_active = p2_active;
-    	p2_pokemon.put(p2_active, new HashSet<>());
+    	p2_pokemon.put(p2_active, new LinkedHashSet<>());
     }
    
     public GameState simulateTurn(Simulator.Action a1, Simulator.Action a2) {
@@ -84,23 +98,25 @@ public class GameState {
     	for (Pokemon p : p1_team.pokemonList) {
     		Pokemon clone = p.clone();
     		next_team.pokemonList.add(clone);
-    		if (p.species.equals(p1_team.activePokemon.species)) {
+    		// A transformed pokemon is replaced by what it transformed into at the end of each
+    		// turn (see playTurn), so it is matched by that too (like p2_active below)
+    		if (p.speciesData == p1_team.activePokemon.speciesData || isTransformedInto(p, p1_team.activePokemon)) {
     			next_team.activePokemon = clone;
     		}
     		
     		// Change the action so that the user/targets are the clones
     		if (a1.getType() == Simulator.ActionType.SWITCH) {
     			Simulator.SwitchAction sw = (Simulator.SwitchAction)(a1);
-    			if (p.species.equals(sw.switchTo.species)) {
+    			if (p.speciesData == sw.switchTo.speciesData) {
     				sw.switchTo = clone;
     				t1 = p;
     			}
     		}
     		else if (a1.getType() == Simulator.ActionType.ATTACK) {
     			Simulator.AttackAction aa = (Simulator.AttackAction)(a1);
-    			if (p.species.equals(aa.user.species)) {
+    			if (p.speciesData == aa.user.speciesData || isTransformedInto(p, aa.user)) {
+    				t1 = (isTransformedInto(p, aa.user) ? aa.user : p);
     				aa.user = clone;
-    				t1 = p;
     			}
     		}
     	}
@@ -108,42 +124,249 @@ public class GameState {
     	
     	// Create a deep copy of player-two's known team
     	next.p2_pokemon = pass_on();
+    	Pokemon t2 = null;
     	
+    	// pass_on() keeps the order of the pokemon, so [original] is the pokemon [p] is a clone of
+    	Iterator<Pokemon> originals = p2_pokemon.keySet().iterator();
     	for (Pokemon p : next.p2_pokemon.keySet()) {
-    		if (p.species.equals(p2_active.species) || (p.status.transformed != null ? p.status.transformed.species.equals(p2_active.species) : false)) {
+    		Pokemon original = originals.next();
+    		if (p.speciesData == p2_active.speciesData || (p.status.transformed != null && p.status.transformed.speciesData == p2_active.speciesData)) {
     			next.p2_active = p;
     		}
     		// Change the action so that the user/targets are the clones
     		if (a2.getType() == Simulator.ActionType.SWITCH) {
     			Simulator.SwitchAction sw = (Simulator.SwitchAction)(a2);
-    			if (p.species.equals(sw.switchTo.species)) {
+    			if (p.speciesData == sw.switchTo.speciesData) {
     				sw.switchTo = p;
+    				t2 = original;
     			}
     		}
     		else if (a2.getType() == Simulator.ActionType.ATTACK) {
     			Simulator.AttackAction aa = (Simulator.AttackAction)(a2);
-    			if (p.species.equals(aa.user.species)) {
+    			if (p.speciesData == aa.user.speciesData || isTransformedInto(original, aa.user)) {
+    				t2 = (isTransformedInto(original, aa.user) ? aa.user : original);
     				aa.user = p;
     			}
     		}
     	}
     	
     	// Execute the turn (analogous to the one in simulator)
+    	next.playTurn(a1, a2);
+
+		if (a1.getType() == Simulator.ActionType.ATTACK) {
+			Simulator.AttackAction aa = (Simulator.AttackAction)(a1);
+			aa.user = t1;
+		}
+		else {
+			Simulator.SwitchAction sa = (Simulator.SwitchAction)(a1);
+			sa.switchTo = t1;
+		}
+		
+		// Point the opponent's action back at this game-state's pokemon too, so the action
+		// can be used again from this game-state (e.g. by simulateTurnInPlace). If no pokemon
+		// matched, the action was never changed.
+		if (t2 != null && a2.getType() == Simulator.ActionType.ATTACK) {
+			Simulator.AttackAction aa = (Simulator.AttackAction)(a2);
+			aa.user = t2;
+		}
+		else if (t2 != null) {
+			Simulator.SwitchAction sa = (Simulator.SwitchAction)(a2);
+			sa.switchTo = t2;
+		}
+    	return next;
+    }
+
+    /** Returns whether [p] is transformed into [form] */
+    private static boolean isTransformedInto(Pokemon p, Pokemon form) {
+    	return p.status.transformed != null && p.status.transformed == form;
+    }
+
+    /**
+     * Simulates the turn in which the player uses [a1] and the opponent uses [a2] by modifying
+     * this game-state rather than creating a new one. Every pokemon is saved to [log] before
+     * the first time it is modified, so undo([log]) reverts this and any other turns simulated
+     * with [log] since it was last undone.
+     * 
+     * [a1] and [a2] must refer to the pokemon of this game-state, and are not modified.
+     */
+    public void simulateTurnInPlace(Simulator.Action a1, Simulator.Action a2, UndoLog log) {
+    	log.save(this);
+    	log.save(p1_team.activePokemon);
+    	log.save(p2_active);
+    	log.save(a1);
+    	log.save(a2);
+    	playTurn(a1, a2);
+    }
+    
+    /** Reverts every turn simulated with [log] (see simulateTurnInPlace) and clears [log] */
+    public void undo(UndoLog log) {
+    	log.restore(this);
+    }
+    
+    /**
+     * Pokemon saved by simulateTurnInPlace so that the turns it simulated can be undone
+     * 
+     * Each pokemon is only saved once, before it is first modified, and the saved copies 
+     * are reused after undo, so a log can be used for many turns without allocating.
+     */
+    public static class UndoLog {
+    	private GameState state;
+    	private Pokemon p1Active, p2Active;
+    	
+    	private ArrayList<PokemonCopy> copies = new ArrayList<>();
+    	/** copies[0..size) hold the pokemon saved since the last undo */
+    	private int size;
+    	
+    	private void save(GameState gs) {
+    		if (state == null) {
+    			state = gs;
+    			p1Active = gs.p1_team.activePokemon;
+    			p2Active = gs.p2_active;
+    		}
+    		else if (state != gs) {
+    			throw new RuntimeException("UndoLog is already in use by another game-state");
+    		}
+    	}
+    	
+    	/** Saves the pokemon that [a] can modify */
+    	private void save(Simulator.Action a) {
+    		if (a.getType() == Simulator.ActionType.SWITCH)
+    			save(((Simulator.SwitchAction)a).switchTo);
+    		else if (a.getType() == Simulator.ActionType.ATTACK)
+    			save(((Simulator.AttackAction)a).user);
+    	}
+    	
+    	/** Saves [p] and the pokemon it is transformed into or from, unless they are already saved */
+    	private void save(Pokemon p) {
+    		saveOnce(p);
+    		saveOnce(p.status.transformed);
+    		saveOnce(p.status.transformedFrom);
+    	}
+    	
+    	private void saveOnce(Pokemon p) {
+    		if (p == null)
+    			return;
+    		for (int i = 0; i < size; i++) {
+    			if (copies.get(i).pokemon == p)
+    				return;
+    		}
+    		if (size == copies.size())
+    			copies.add(new PokemonCopy());
+    		copies.get(size++).save(p);
+    	}
+    	
+    	private void restore(GameState gs) {
+    		if (state == null)
+    			return;
+    		if (state != gs)
+    			throw new RuntimeException("UndoLog was used by another game-state");
+    		
+    		// A pokemon and the pokemon it transforms into share their status, so the copies are
+    		// restored in reverse order so that the earliest copy of a status is restored last
+    		for (int i = size-1; i >= 0; i--) {
+    			copies.get(i).restore();
+    		}
+    		gs.p1_team.activePokemon = p1Active;
+    		gs.p2_active = p2Active;
+    		
+    		clear();
+    	}
+    	
+    	/** 
+    	 * Forgets the saved pokemon without restoring them, so the log can be used again 
+    	 * (e.g. once the game-state it was used for is discarded)
+    	 */
+    	public void clear() {
+    		size = 0;
+    		state = null;
+    		p1Active = null;
+    		p2Active = null;
+    	}
+    }
+    
+    /**
+     * Copy of the parts of a pokemon which a turn can modify. The species, types and stats of
+     * a pokemon never change (transforming creates a new pokemon), so they are not copied.
+     */
+    private static class PokemonCopy {
+    	private Pokemon pokemon;
+    	private int currHp;
+    	private Move[] moves, moveValues = new Move[4];
+    	private int[] pp, ppValues = new int[4];
+    	private String lastAttacker;
+    	private Move lastMoveUsed;
+    	
+    	private Pokemon.Status status;
+    	private long statusWord0, statusWord1;
+    	private Pokemon transformed, transformedFrom;
+    	
+    	private void save(Pokemon p) {
+    		pokemon = p;
+    		currHp = p.currHp;
+    		moves = p.moves;
+    		if (moveValues.length < moves.length)
+    			moveValues = new Move[moves.length];
+    		System.arraycopy(moves, 0, moveValues, 0, moves.length);
+    		pp = p.pp;
+    		if (ppValues.length < pp.length)
+    			ppValues = new int[pp.length];
+    		System.arraycopy(pp, 0, ppValues, 0, pp.length);
+    		lastAttacker = p.lastAttacker;
+    		lastMoveUsed = p.lastMoveUsed;
+    		
+    		Pokemon.Status s = p.status;
+    		status = s;
+    		statusWord0 = s.getWord(0);
+    		statusWord1 = s.getWord(1);
+    		transformed = s.transformed;
+    		transformedFrom = s.transformedFrom;
+    	}
+    	
+    	private void restore() {
+    		Pokemon p = pokemon;
+    		p.currHp = currHp;
+    		p.moves = moves;
+    		System.arraycopy(moveValues, 0, moves, 0, moves.length);
+    		p.pp = pp;
+    		System.arraycopy(ppValues, 0, pp, 0, pp.length);
+    		p.lastAttacker = lastAttacker;
+    		p.lastMoveUsed = lastMoveUsed;
+    		
+    		Pokemon.Status s = status;
+    		p.status = s;
+    		s.setWord(0, statusWord0);
+    		s.setWord(1, statusWord1);
+    		s.transformed = transformed;
+    		s.transformedFrom = transformedFrom;
+    		
+    		// Don't keep the pokemon reachable after it is restored
+    		pokemon = null;
+    		status = null;
+    		transformed = null;
+    		transformedFrom = null;
+    	}
+    }
+    
+    /**
+     * Executes the turn in which the player uses [a1] and the opponent uses [a2] on
+     * this game-state (analogous to the one in simulator)
+     */
+    private void playTurn(Simulator.Action a1, Simulator.Action a2) {
 		if (a1.getType() == Simulator.ActionType.SWITCH) {
 			Simulator.SwitchAction s1 = (Simulator.SwitchAction)a1;
-			Simulator.addMessage(p1_team.activePokemon.species + " was switched with " + s1.switchTo.species);
+			BattleEvents.emit(BattleEvents.Type.SWITCH, p1_team.activePokemon.species, s1.switchTo.species);
 			
 			// Switch
-			next.p1_team.activePokemon.resetUponSwitch();
-			next.p1_team.activePokemon = s1.switchTo;
+			p1_team.activePokemon.resetUponSwitch();
+			p1_team.activePokemon = s1.switchTo;
 		}
 		if (a2.getType() == Simulator.ActionType.SWITCH) {
 			Simulator.SwitchAction s2 = (Simulator.SwitchAction)a2;
-			Simulator.addMessage(p2_active.species + " was switched with " + s2.switchTo.species);
+			BattleEvents.emit(BattleEvents.Type.SWITCH, p2_active.species, s2.switchTo.species);
 			
 			// Switch
-			next.p2_active.resetUponSwitch();
-			next.p2_active = s2.switchTo;
+			p2_active.resetUponSwitch();
+			p2_active = s2.switchTo;
 		}
 		
 		// Both moves are attack actions, so must compare speeds
@@ -160,14 +383,14 @@ public class GameState {
 			/* Player 1's pokemon can attack first if and only if:
 			 * 1) It's move is higher priority, or
 			 * 2) It's move is not lower priority and it wins out on speed. */
-			if (p1 > p2 || (p1 == p2 && ((spd1 > spd2) || (spd1 == spd2 && Math.random() < 0.5)))) {
-				aa1.move.use(aa1.user, next.p2_active);
+			if (p1 > p2 || (p1 == p2 && ((spd1 > spd2) || (spd1 == spd2 && BattleRandom.nextDouble() < 0.5)))) {
+				aa1.move.use(aa1.user, p2_active);
 				if(aa1.deductPPIndex != -1) {
 					aa1.user.pp[aa1.deductPPIndex]--;
 				}
-				if (next.p2_active.isAlive()) {
+				if (p2_active.isAlive()) {
 					// Attack
-					aa2.move.use(aa2.user, next.p1_team.activePokemon);
+					aa2.move.use(aa2.user, p1_team.activePokemon);
 					if(aa2.deductPPIndex != -1) {
 						aa2.user.pp[aa2.deductPPIndex]--;
 					}
@@ -176,14 +399,14 @@ public class GameState {
 			/* If none of the conditions above are satisifed, then player 2
 			 * must attack first. */
 			else {
-				aa2.move.use(aa2.user, next.p1_team.activePokemon);
+				aa2.move.use(aa2.user, p1_team.activePokemon);
 				if(aa2.deductPPIndex != -1) {
 					aa2.user.pp[aa2.deductPPIndex]--;
 				}
 				
 				
-				if (next.p1_team.activePokemon.isAlive()) {
-					aa1.move.use(aa1.user, next.p2_active);
+				if (p1_team.activePokemon.isAlive()) {
+					aa1.move.use(aa1.user, p2_active);
 					if(aa1.deductPPIndex != -1) {
 						aa1.user.pp[aa1.deductPPIndex]--;
 					}
@@ -197,7 +420,7 @@ public class GameState {
 			if (a1.getType() == Simulator.ActionType.ATTACK) {
 				// Attack
 				Simulator.AttackAction aa1 = (Simulator.AttackAction)a1;
-				aa1.move.use(aa1.user, next.p2_active);
+				aa1.move.use(aa1.user, p2_active);
 				
 				if(aa1.deductPPIndex != -1) {
 					aa1.user.pp[aa1.deductPPIndex]--;
@@ -206,7 +429,7 @@ public class GameState {
 			else if (a2.getType() == Simulator.ActionType.ATTACK){
 				// Attack
 				Simulator.AttackAction aa2 = (Simulator.AttackAction)a2;
-				aa2.move.use(aa2.user, next.p1_team.activePokemon);
+				aa2.move.use(aa2.user, p1_team.activePokemon);
 				
 				if(aa2.deductPPIndex != -1) {
 					aa2.user.pp[aa2.deductPPIndex]--;
@@ -218,47 +441,141 @@ public class GameState {
 		
 		// Apply poison/burn damage, reset counter damage
 		
-		for (Pokemon p : new Pokemon[] {next.p1_team.activePokemon, next.p2_active}) {
+		for (Pokemon p : new Pokemon[] {p1_team.activePokemon, p2_active}) {
 			
 			// Apply transformation effects
 			if (p.status.transformed != null) {
-				if (p == next.p1_team.activePokemon) {
-					next.p1_team.activePokemon = p.status.transformed;
+				if (p == p1_team.activePokemon) {
+					p1_team.activePokemon = p.status.transformed;
 				}
 				else {
-					next.p2_active = p.status.transformed;
+					p2_active = p.status.transformed;
 				}
 			}
 			
 			// Apply poison/burn damage
 			if (p.isAlive()) {
-				if (p.status.burn || p.status.poison) {
+				if (p.status.isBurn() || p.status.isPoison()) {
 					p.currHp -= p.maxHp/16;
 				}
-				if (p.status.badly_poisoned_counter > 0) {
-					p.currHp -= p.maxHp*p.status.badly_poisoned_counter/16;
-					p.status.badly_poisoned_counter++;
+				if (p.status.getBadlyPoisonedCounter() > 0) {
+					p.currHp -= p.maxHp*p.status.getBadlyPoisonedCounter()/16;
+					p.status.setBadlyPoisonedCounter(p.status.getBadlyPoisonedCounter() + 1);
 				}
 				
 				// Reset counter damage
-				p.status.counter_damage = 0;
+				p.status.setCounterDamage(0);
 			}
-		}	
-
-		if (a1.getType() == Simulator.ActionType.ATTACK) {
-			Simulator.AttackAction aa = (Simulator.AttackAction)(a1);
-			aa.user = t1;
 		}
-		else {
-			Simulator.SwitchAction sa = (Simulator.SwitchAction)(a1);
-			sa.switchTo = t1;
-		}
-    	return next;
+    }
+
+    /**
+     * Creates a deep copy of the game-state (with the exception of the Move objects),
+     * including its own copy of the known opponent movesets. Nothing in the copy is
+     * shared with this game-state, so the two can be searched on different threads.
+     */
+    public GameState clone() {
+    	GameState copy = new GameState();
+
+    	copy.p1_team = new Team();
+    	for (Pokemon p : p1_team.pokemonList) {
+    		Pokemon clone = p.clone();
+    		copy.p1_team.pokemonList.add(clone);
+    		if (p == p1_team.activePokemon) {
+    			copy.p1_team.activePokemon = clone;
+    		}
+    		else if (p.status.transformed == p1_team.activePokemon) {
+    			copy.p1_team.activePokemon = clone.status.transformed;
+    		}
+    	}
+
+    	copy.p2_pokemon = new LinkedHashMap<>();
+    	for (Map.Entry<Pokemon, HashSet<Move>> e : p2_pokemon.entrySet()) {
+    		Pokemon p = e.getKey();
+    		Pokemon clone = p.clone();
+    		copy.p2_pokemon.put(clone, new LinkedHashSet<>(e.getValue()));
+    		if (p == p2_active) {
+    			copy.p2_active = clone;
+    		}
+    		else if (p.status.transformed == p2_active) {
+    			copy.p2_active = clone.status.transformed;
+    		}
+    	}
+
+    	return copy;
+    }
+
+    /**
+     * Zobrist-style hash of the game-state. It is the XOR of a pseudo-random key for
+     * every feature of every pokemon (hp, moves, pp, stat modifications, status, which
+     * pokemon are active), and for every move we know an opponent's pokemon has.
+     * The order of the pokemon of either team does not change the hash.
+     */
+    public long hash() {
+    	long h = 0;
+    	for (Pokemon p : p1_team.pokemonList) {
+    		boolean active = (p == p1_team.activePokemon || p.status.transformed == p1_team.activePokemon);
+    		h ^= pokemonHash(p, 1, active, true);
+    	}
+    	for (Map.Entry<Pokemon, HashSet<Move>> e : p2_pokemon.entrySet()) {
+    		Pokemon p = e.getKey();
+    		boolean active = (p == p2_active || p.status.transformed == p2_active);
+    		// The moves of the opponent's pokemon are random, so only the known moves are hashed
+    		h ^= pokemonHash(p, 2, active, false);
+    		long pokemonKey = pokemonKey(p, 2);
+    		for (Move m : e.getValue()) {
+    			h ^= zobristKey(pokemonKey, -1, (m == null ? 0 : m.name.hashCode()));
+    		}
+    	}
+    	return h;
+    }
+    
+    /** Key of pokemon [p] of player [side], from which the keys of its features are derived */
+    private static long pokemonKey(Pokemon p, int side) {
+    	return mix(side*0x9E3779B97F4A7C15L + p.species.hashCode());
+    }
+    
+    /** Key for value [value] of feature number [feature] of the pokemon with key [pokemonKey] */
+    private static long zobristKey(long pokemonKey, int feature, long value) {
+    	return mix(pokemonKey ^ mix(((long)feature << 32) ^ value));
+    }
+    
+    /** Finalizer of the SplitMix64 generator, which maps similar inputs to unrelated 64 bit values */
+    private static long mix(long z) {
+    	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    	return z ^ (z >>> 31);
+    }
+    
+    private static long pokemonHash(Pokemon p, int side, boolean active, boolean hashMoves) {
+    	long key = pokemonKey(p, side);
+    	Pokemon.Status s = p.status;
+    	int f = 0;
+    	long h = zobristKey(key, f++, active ? 1 : 0);
+    	h ^= zobristKey(key, f++, p.currHp);
+    	h ^= zobristKey(key, f++, p.level);
+    	for (int i = 0; i < p.moves.length; i++) {
+    		if (hashMoves)
+    			h ^= zobristKey(key, f, (p.moves[i] == null ? 0 : p.moves[i].name.hashCode()));
+    		f++;
+    		h ^= zobristKey(key, f++, p.pp[i]);
+    	}
+    	// Every status but transform is packed in the two words
+    	h ^= zobristKey(key, f++, s.getWord(0));
+    	h ^= zobristKey(key, f++, s.getWord(1));
+    	h ^= zobristKey(key, f++, (p.lastMoveUsed == null ? 0 : p.lastMoveUsed.name.hashCode()));
+    	h ^= zobristKey(key, f++, (p.lastAttacker == null ? 0 : p.lastAttacker.hashCode()));
+    	
+    	// The transformed pokemon shares this pokemon's status, but has its own moves, pp and stats
+    	if (s.transformed != null && s.transformed != p) {
+    		h ^= pokemonHash(s.transformed, side+2, active, true);
+    	}
+    	return h;
     }
 
     /* Pass a deep copy of [p2_pokemon]. Intended to be used by successor game state. */
     private HashMap<Pokemon, HashSet<Move>> pass_on() {
-    	HashMap<Pokemon, HashSet<Move>> ret = new HashMap<>();
+    	HashMap<Pokemon, HashSet<Move>> ret = new LinkedHashMap<>();
 		// For every key, re-insert the key,value into the new hash map.
 		for (Pokemon p : p2_pokemon.keySet()) {
 			Pokemon clone = p.clone();
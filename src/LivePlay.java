@@ -1,5 +1,5 @@
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -128,7 +128,7 @@ public class LivePlay {
 					}
 					if(!foundPokemon) {
 						Pokemon p = new Pokemon(species, new String[4], getLevel(species));
-						state.p2_pokemon.put(p, new HashSet<>());
+						state.p2_pokemon.put(p, new LinkedHashSet<>());
 						state.p2_active = p;
 					}
 					state.p2_active.resetUponSwitch();
@@ -162,34 +162,34 @@ public class LivePlay {
 				Pokemon targetPokemon = (p1) ? state.p1_team.activePokemon : state.p2_active;
 				String status = split[2];
 				if(status.equals("sleep")) {
-					targetPokemon.status.sleep_turns_left = 3; // guess how long sleep will be because we don't know upfront
+					targetPokemon.status.setSleepTurnsLeft(3); // guess how long sleep will be because we don't know upfront
 				}
 				else if (status.equals("paralyze")) {
-					targetPokemon.status.paralyze = true;
+					targetPokemon.status.setParalyze(true);
 				}
 				else if (status.equals("freeze")) {
-					targetPokemon.status.freeze = true;
+					targetPokemon.status.setFreeze(true);
 				}
 				else if (status.equals("poison")) {
-					targetPokemon.status.poison = true;
+					targetPokemon.status.setPoison(true);
 				}
 				else if (status.equals("toxic")) {
-					targetPokemon.status.badly_poisoned_counter = 1;
+					targetPokemon.status.setBadlyPoisonedCounter(1);
 				}
 				else if (status.equals("burn")) {
-					targetPokemon.status.burn = true;
+					targetPokemon.status.setBurn(true);
 				}
 				else if (status.equals("confuse")) {
-					targetPokemon.status.confuse_turns_left = 2; // we don't know how long it will last, approximate as 2
+					targetPokemon.status.setConfuseTurnsLeft(2); // we don't know how long it will last, approximate as 2
 				}
 				else if (status.equals("charge")) {
-					targetPokemon.status.charge = true;
+					targetPokemon.status.setCharge(true);
 				}
 				else if (status.equals("recharge")) {
-					targetPokemon.status.recharge = true;
+					targetPokemon.status.setRecharge(true);
 				}
 				else if (status.equals("substitute")) {
-					targetPokemon.status.substitute_hp = targetPokemon.maxHp/4;
+					targetPokemon.status.setSubstituteHp(targetPokemon.maxHp/4);
 				}
 				else {
 					throw new RuntimeException("status name not found");
@@ -199,34 +199,34 @@ public class LivePlay {
 				Pokemon targetPokemon = (p1) ? state.p1_team.activePokemon : state.p2_active;
 				String status = split[2];
 				if(status.equals("sleep")) {
-					targetPokemon.status.sleep_turns_left = 0;
+					targetPokemon.status.setSleepTurnsLeft(0);
 				}
 				else if (status.equals("paralyze")) {
-					targetPokemon.status.paralyze = false;
+					targetPokemon.status.setParalyze(false);
 				}
 				else if (status.equals("freeze")) {
-					targetPokemon.status.freeze = false;
+					targetPokemon.status.setFreeze(false);
 				}
 				else if (status.equals("poison")) {
-					targetPokemon.status.poison = false;
+					targetPokemon.status.setPoison(false);
 				}
 				else if (status.equals("toxic")) {
-					targetPokemon.status.badly_poisoned_counter = 0;
+					targetPokemon.status.setBadlyPoisonedCounter(0);
 				}
 				else if (status.equals("burn")) {
-					targetPokemon.status.burn = false;
+					targetPokemon.status.setBurn(false);
 				}
 				else if (status.equals("confuse")) {
-					targetPokemon.status.confuse_turns_left = 0;
+					targetPokemon.status.setConfuseTurnsLeft(0);
 				}
 				else if (status.equals("charge")) {
-					targetPokemon.status.charge = false;
+					targetPokemon.status.setCharge(false);
 				}
 				else if (status.equals("recharge")) {
-					targetPokemon.status.recharge = false;
+					targetPokemon.status.setRecharge(false);
 				}
 				else if (status.equals("substitute")) {
-					targetPokemon.status.substitute_hp = 0;
+					targetPokemon.status.setSubstituteHp(0);
 				}
 				else {
 					throw new RuntimeException("status name not found");
@@ -288,7 +288,7 @@ public class LivePlay {
 	 * of a pokemon with the given species
 	 */
 	private static int getLevel(String species) {
-		String tier = Pokedex.getDex().get(species).tier;
+		String tier = Pokedex.getDex().get(species).getTier();
 		return TeamGenerator.level(species, tier);
 	}
 }
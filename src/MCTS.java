@@ -1,8 +1,20 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class MCTS {
 	
+	/** Time limit of the default search budget (see SearchBudget.DEFAULT) */
 	public static final int SIMULATION_TIME_LIMIT_SECONDS = 3;
 	/** 
 	 * The mixing parameter for combining result of valuation neural network
@@ -25,6 +37,28 @@ public class MCTS {
 	 */
 	public static final int PLAYOUT_MAX_DEPTH = 300;
 	
+	/**
+	 * Number of independent trees searched concurrently by chooseMoveRootParallel
+	 * when no number is given (one per available core)
+	 */
+	public static final int ROOT_PARALLEL_TREES = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * Pool of [ROOT_PARALLEL_TREES] daemon threads that root and tree parallel searches are 
+	 * run on. Created the first time it is needed by getWorkerPool()
+	 */
+	private static ExecutorService workerPool;
+	
+	/**
+	 * Number of visits with the worst possible reward that are added to an action 
+	 * while a tree parallel simulation through it is in progress, so that other 
+	 * threads are steered towards different branches
+	 */
+	public static final int VIRTUAL_LOSS = 3;
+	
+	/** Number of nodes that the transposition table of each tree can hold (must be a power of 2) */
+	public static final int TRANSPOSITION_TABLE_SIZE = 1 << 16;
+	
 	
 	/**
 	 * This class contains data for a particular action of a 
@@ -32,6 +66,9 @@ public class MCTS {
 	 * 
 	 * We need to store X and n for each action because Decoupled UCT
 	 * stores X and n that way instead of in each node
+	 * 
+	 * X and n are updated atomically without locking, so the same ActionData
+	 * can be updated by several threads searching a shared tree
 	 */
 	public static class ActionData {
 		/**
@@ -50,22 +87,55 @@ public class MCTS {
 		public static final double C = 0.25;
 		
 		public Simulator.Action action;
-		public double X;
-		public int n;
+		/** Sum of rewards, stored as the raw bits of a double so it can be compared-and-set */
+		private final AtomicLong X;
+		private final AtomicInteger n;
 		public ActionData(Simulator.Action a) {
 			action = a;
-			X = 0;
-			n = 0;
+			X = new AtomicLong(Double.doubleToRawLongBits(0));
+			n = new AtomicInteger(0);
+		}
+		public double getX() {
+			return Double.longBitsToDouble(X.get());
+		}
+		public int getN() {
+			return n.get();
 		}
 		public void update(double u1) {
-			X += u1;
-			n +=1 ;
+			add(u1, 1);
+		}
+		/**
+		 * Atomically add [x] to X and [count] to n
+		 * 
+		 * X and n are updated one after the other, so another thread may briefly
+		 * see the new X with the old n (which only perturbs that thread's selection)
+		 */
+		public void add(double x, int count) {
+			long oldBits, newBits;
+			do {
+				oldBits = X.get();
+				newBits = Double.doubleToRawLongBits(Double.longBitsToDouble(oldBits) + x);
+			} while(!X.compareAndSet(oldBits, newBits));
+			n.addAndGet(count);
+		}
+		/**
+		 * Add [VIRTUAL_LOSS] visits that each had reward [loss] 
+		 * (the worst reward for whoever chooses this action)
+		 */
+		public void addVirtualLoss(double loss) {
+			add(loss*VIRTUAL_LOSS, VIRTUAL_LOSS);
+		}
+		/** Undo addVirtualLoss(loss) */
+		public void removeVirtualLoss(double loss) {
+			add(-loss*VIRTUAL_LOSS, -VIRTUAL_LOSS);
 		}
 		/**
 		 * Return the reward used to compare actions to each other
 		 * to determine which one to select after simulations are over
 		 */
 		public double estimatedReward() {
+			double X = getX();
+			int n = getN();
 			return (n != 0 ? X/n : Double.MIN_VALUE);
 		}
 
@@ -74,6 +144,8 @@ public class MCTS {
 		 * http://mlanctot.info/files/papers/cig14-smmctsggp.pdf
 		 */
 		public double UCB(int ns) {
+			double X = getX();
+			int n = getN();
 			return X/n + C*Math.sqrt(Math.log(ns)/n);
 		}
 		
@@ -86,7 +158,7 @@ public class MCTS {
 		public static int bestAction(ActionData[] actions) {
 			int ns = 0;
 			for(int i = 0; i < actions.length; i++)
-				ns += actions[i].n;
+				ns += actions[i].getN();
 			
 			int bestAction = 0;
 			double bestUCB = actions[0].UCB(ns);
@@ -103,6 +175,151 @@ public class MCTS {
 		}
 	}
 	
+	/**
+	 * How much searching to do before choosing a move. One of
+	 * - a fixed number of simulations (which makes searches comparable regardless of machine speed)
+	 * - a wall clock time limit
+	 * - an adaptive time limit, which also stops once the best root action can't be overtaken
+	 *   by any other root action in the simulations left in the time limit
+	 * 
+	 * Regardless of the budget, no search is done when the player has only one action 
+	 * (e.g. RECHARGE, NOTHING, continuing bide, or a single pokemon left to switch to)
+	 */
+	public static class SearchBudget {
+		public enum Mode {
+			ITERATIONS, DEADLINE, ADAPTIVE;
+		}
+		
+		/** Search for [SIMULATION_TIME_LIMIT_SECONDS] seconds */
+		public static final SearchBudget DEFAULT = deadline(SIMULATION_TIME_LIMIT_SECONDS*1000L);
+		
+		/** 
+		 * Number of simulations between checks of whether the best root action 
+		 * has been decided in ADAPTIVE mode 
+		 */
+		public static final int ADAPTIVE_CHECK_INTERVAL = 64;
+		
+		public final Mode mode;
+		/** Number of simulations to run (ITERATIONS mode only) */
+		public final int iterations;
+		/** Time limit in milliseconds (DEADLINE and ADAPTIVE modes only) */
+		public final long timeLimitMillis;
+		
+		private SearchBudget(Mode mode, int iterations, long timeLimitMillis) {
+			this.mode = mode;
+			this.iterations = iterations;
+			this.timeLimitMillis = timeLimitMillis;
+		}
+		
+		public static SearchBudget iterations(int iterations) {
+			return new SearchBudget(Mode.ITERATIONS, iterations, 0);
+		}
+		
+		public static SearchBudget deadline(long timeLimitMillis) {
+			return new SearchBudget(Mode.DEADLINE, 0, timeLimitMillis);
+		}
+		
+		public static SearchBudget adaptive(long timeLimitMillis) {
+			return new SearchBudget(Mode.ADAPTIVE, 0, timeLimitMillis);
+		}
+		
+		/**
+		 * Returns the budget each of [numTrees] trees should be searched with so that
+		 * the search as a whole stays within this budget
+		 */
+		public SearchBudget perTree(int numTrees) {
+			if(mode == Mode.ITERATIONS)
+				return iterations((iterations + numTrees - 1)/numTrees);
+			return this;
+		}
+		
+		/**
+		 * Returns whether the search of [root], which started at [startTime] (from System.nanoTime())
+		 * and has run [iterationsDone] simulations so far, should stop
+		 */
+		public boolean exhausted(TreeNode root, int iterationsDone, long startTime) {
+			if(mode == Mode.ITERATIONS)
+				return iterationsDone >= iterations;
+			
+			long elapsed = System.nanoTime() - startTime;
+			long timeLimit = timeLimitMillis*1000000;
+			if(elapsed >= timeLimit)
+				return true;
+			
+			if(mode == Mode.ADAPTIVE && iterationsDone > 0 && iterationsDone % ADAPTIVE_CHECK_INTERVAL == 0) {
+				// Assume simulations keep running at the rate they have so far
+				long remaining = (long)((double)iterationsDone/elapsed*(timeLimit - elapsed));
+				return bestActionDecided(root.playerActions, remaining);
+			}
+			return false;
+		}
+		
+		/**
+		 * Returns whether the action getBestAction() would choose out of [actions] stays the 
+		 * best one no matter how the next [remaining] simulations turn out, assuming every
+		 * reward is in [0, 1]. That is the case when even if all [remaining] simulations 
+		 * used the best action and got reward 0, every other action would still be worse 
+		 * than it if all [remaining] simulations used that action and got reward 1.
+		 */
+		private static boolean bestActionDecided(ActionData[] actions, long remaining) {
+			int best = 0;
+			for(int i = 1; i < actions.length; i++) {
+				if(actions[i].estimatedReward() > actions[best].estimatedReward())
+					best = i;
+			}
+			if(actions[best].getN() == 0)
+				return false;
+			
+			double bestLowestReward = actions[best].getX()/(actions[best].getN() + remaining);
+			for(int i = 0; i < actions.length; i++) {
+				if(i != best && (actions[i].getX() + remaining)/(actions[i].getN() + remaining) >= bestLowestReward)
+					return false;
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Table of the nodes of a tree, keyed by the hash of their game state and their depth,
+	 * so that the same node is used for a game state whichever order of actions it is reached by
+	 * 
+	 * The depth is part of the key so that the tree stays acyclic (a game state can repeat 
+	 * itself after e.g. both players switch back and forth).
+	 * 
+	 * The table has a fixed number of slots and a node replaces whatever node was in its slot,
+	 * so it only forgets nodes, which stay in the tree. Nodes can be looked up and added by 
+	 * several threads at once.
+	 */
+	public static class TranspositionTable {
+		private AtomicReferenceArray<TreeNode> nodes;
+		
+		/** [size] must be a power of 2 */
+		public TranspositionTable(int size) {
+			if(Integer.bitCount(size) != 1)
+				throw new RuntimeException("Transposition table size must be a power of 2: " + size);
+			nodes = new AtomicReferenceArray<TreeNode>(size);
+		}
+		
+		/** Returns the key of game state [gs] at depth [depth] of the tree */
+		public static long key(GameState gs, int depth) {
+			return gs.hash() ^ (depth * 0x9E3779B97F4A7C15L);
+		}
+		
+		/** Returns the node with key [key], or null if it is not in the table */
+		public TreeNode get(long key) {
+			TreeNode node = nodes.get(slot(key));
+			return (node != null && node.key == key ? node : null);
+		}
+		
+		public void put(TreeNode node) {
+			nodes.set(slot(node.key), node);
+		}
+		
+		private int slot(long key) {
+			return (int)(key ^ (key >>> 32)) & (nodes.length()-1);
+		}
+	}
+	
 	public static class TreeNode {
 		public ActionData[] playerActions;
 		public ActionData[] opponentActions;
@@ -130,6 +347,12 @@ public class MCTS {
 		/** The i'th entry is the probability of playerActions[i] based on the policy network */
 		private double[] actionProbabilityDistribution;
 		
+		/** 
+		 * Input of the networks for currentState. Successor nodes update a copy of it rather 
+		 * than encoding their state from scratch, and playouts start from it.
+		 */
+		private NeuralNet.Features features;
+		
 		/**
 		 * This network should be compatible with the input of NeuralNet.input(Gamestate) and
 		 * should have 9 output nodes with values corresponding to weights on choosing certain actions
@@ -153,126 +376,137 @@ public class MCTS {
 		 */
 		private NeuralNet valuationNetwork;
 		
+		/**
+		 * If not null, this node and its successors are evaluated by submitting
+		 * their states to this queue instead of by [policyNetwork] and [valuationNetwork]
+		 */
+		private EvaluationQueue evaluationQueue;
+		
+		/** Table shared by every node of this node's tree */
+		private TranspositionTable transpositionTable;
+		
+		/** Number of turns between the root of the tree and this node */
+		private int depth;
+		
+		/** Key of this node in the transposition table */
+		private long key;
+		
+		/** 
+		 * Whether currentState is terminal. This is stored since currentState is modified 
+		 * while the node is played out (see Playout), when other threads may be selecting it.
+		 */
+		private boolean terminal;
+		
 		/**
 		 * if there is a previously unselected action for this node using playerActions[i] and opponentActions[j]
 		 * - Initializes entries[i][j] to contain whatever the successor node for playerActions[i] and opponentActions[j] should be
 		 * - Updates nextUnselectedActions class variable
-		 * - returns {i, j}
+		 * - returns {i, j, 1} if the successor node was created by this call, or {i, j, 0} if
+		 *   it was already in the tree (i.e. it was found in the transposition table)
 		 * Otherwise, returns null
 		 */
 		public int[] getAndIncrementNextUnselectedActions() {
-			if (nextUnselectedActions == null)
-				return null;
-			
-			int i = nextUnselectedActions[0];
-			int j = nextUnselectedActions[1];
-			
-			nextUnselectedActions[1]++;
-			if(nextUnselectedActions[1] >= opponentActions.length) {
-				nextUnselectedActions[1] = 0;
-				nextUnselectedActions[0]++;
-				if(nextUnselectedActions[0] >= playerActions.length) {
-					nextUnselectedActions = null;
+			return getAndIncrementNextUnselectedActions(policyNetwork, valuationNetwork);
+		}
+		
+		/**
+		 * Same as getAndIncrementNextUnselectedActions(), but the successor node is 
+		 * evaluated with [policyNet] and [valuationNet] rather than this node's networks
+		 * 
+		 * Threads searching a shared tree never expand the same action pair twice, since 
+		 * the pair is reserved while holding the lock on this node. The successor is 
+		 * evaluated without holding the lock, so other threads can expand other pairs in 
+		 * the meantime, and is then published to SuccessorNodes (see awaitSuccessor).
+		 */
+		public int[] getAndIncrementNextUnselectedActions(NeuralNet policyNet, NeuralNet valuationNet) {
+			int i, j;
+			GameState newGS;
+			synchronized (this) {
+				if (nextUnselectedActions == null)
+					return null;
+				
+				i = nextUnselectedActions[0];
+				j = nextUnselectedActions[1];
+				
+				nextUnselectedActions[1]++;
+				if(nextUnselectedActions[1] >= opponentActions.length) {
+					nextUnselectedActions[1] = 0;
+					nextUnselectedActions[0]++;
+					if(nextUnselectedActions[0] >= playerActions.length) {
+						nextUnselectedActions = null;
+					}
 				}
+				
+				// Simulating the turn points the actions at the new game state until it is done
+				newGS = currentState.simulateTurn(playerActions[i].action, opponentActions[j].action);
 			}
 			
-			GameState newGS = currentState.simulateTurn(playerActions[i].action, opponentActions[j].action);
-			SuccessorNodes[i][j] = new TreeNode(newGS, policyNetwork, valuationNetwork);
+			// Use the node already in the tree for this game state, if there is one
+			long newKey = TranspositionTable.key(newGS, depth+1);
+			TreeNode successor = transpositionTable.get(newKey);
+			boolean created = (successor == null);
+			if(created) {
+				successor = new TreeNode(newGS, policyNet, valuationNet, evaluationQueue, transpositionTable, depth+1, newKey, features);
+				transpositionTable.put(successor);
+			}
+			synchronized (this) {
+				SuccessorNodes[i][j] = successor;
+				notifyAll();
+			}
 			
-			return new int[] {i, j};
+			return new int[] {i, j, (created ? 1 : 0)};
 			
 		}
 		
 		/**
-		 * Use weights on outputs of policy neural network
+		 * Returns SuccessorNodes[i][j], first waiting for the thread which expanded 
+		 * that pair of actions to publish it if it is still being evaluated
+		 */
+		private synchronized TreeNode awaitSuccessor(int i, int j) {
+			while(SuccessorNodes[i][j] == null) {
+				try {
+					wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while waiting for a successor node");
+				}
+			}
+			return SuccessorNodes[i][j];
+		}
+		
+		/**
+		 * Use weights on outputs of policy neural network ([policyNetworkOutput])
 		 * to set actionProbabilityDistribution for the player.
 		 * This function handles the scaling so that all probabilities sum to 1
 		 * If none of the actions have probability assigned by the network,
 		 * assign each action probability of 1/# of actions
 		 */
-		public void assignActionProbabilityDistribution() {
-			
-			policyNetwork.forward_prop(NeuralNet.input(currentState));
-			double[] policyNetworkProbabilityDistribution = new double[policyNetwork.nn.get(policyNetwork.LAYERS).length];
-			
-			// Initially set the weight on each action to be the max of the output from
-			// the neural network and 0.
-			for(int i = 0; i < policyNetworkProbabilityDistribution.length; i++) {
-				policyNetworkProbabilityDistribution[i] = Math.max(policyNetwork.nn.get(policyNetwork.LAYERS)[i].value, 0);
-			}
-			
+		public void assignActionProbabilityDistribution(double[] policyNetworkOutput) {
 			actionProbabilityDistribution = new double[playerActions.length];
-			
-			/** Maps from a Move for index in playerActions of the action using that move */
-			HashMap<Move, Integer> attackMap = new HashMap<Move, Integer>();
-			
-			/** Maps from a Pokemon for index in playerActions of the action switching to that Pokemon */
-			HashMap<Pokemon, Integer> switchMap = new HashMap<Pokemon, Integer>();
-			
-			for(int i = 0; i < playerActions.length; i++) {
-				if(playerActions[i].action.getType().equals(Simulator.ActionType.ATTACK)) {
-					Simulator.AttackAction aa = (Simulator.AttackAction)(playerActions[i].action);
-					attackMap.put(aa.move, i);
-				}
-				else if (playerActions[i].action.getType().equals(Simulator.ActionType.SWITCH)) {
-					Simulator.SwitchAction sa = (Simulator.SwitchAction)(playerActions[i].action);
-					switchMap.put(sa.switchTo, i);
-				}
-			}
-			
-			if(currentState.p1_team.activePokemon.isAlive()) {
-				// Attack options
-				for(int i = 0; i <= 3; i++) {
-					if(currentState.p1_team.activePokemon.pp[i] > 0) {
-						Move m = currentState.p1_team.activePokemon.moves[i];
-						if(m != null) {
-							Integer actionIndex = attackMap.get(m);
-							if(actionIndex != null) {
-								actionProbabilityDistribution[actionIndex] = policyNetworkProbabilityDistribution[i];
-							}
-						}
-					}	
-				}
-			}
-			Pokemon[] switchOptions = new Pokemon[5];
-			int index = 0;
-			for(Pokemon p : currentState.p1_team.pokemonList) {
-				if(p != currentState.p1_team.activePokemon) {
-					switchOptions[index] = p;
-					index++;
-				}
-			}
-			for(int i = 0; i <= 4; i++) {
-				// Switch options
-				Pokemon p = switchOptions[i];
-				if(p != null && p.isAlive()) {
-					Integer actionIndex = switchMap.get(p);
-					if(actionIndex != null) {
-						actionProbabilityDistribution[actionIndex] = policyNetworkProbabilityDistribution[i+4];
-					}
-				}
-			}
-			
-			// Scale all action probabilities so that they add to 1, or if all are
-			// currently 0, set them to be uniform
-			double totalWeight = 0;
 			for(int i = 0; i < playerActions.length; i++) {
-				totalWeight += actionProbabilityDistribution[i];
-			}
-			
-			if(totalWeight != 0) {
-				for(int i = 0; i < playerActions.length; i++) {
-					actionProbabilityDistribution[i] /= totalWeight;
-				}
-			}
-			else {
-				for(int i = 0; i < playerActions.length; i++) {
-					actionProbabilityDistribution[i] = 1.0/playerActions.length;
-				}
+				actionProbabilityDistribution[i] = policyWeight(currentState.p1_team, playerActions[i].action, policyNetworkOutput);
 			}
+			normalize(actionProbabilityDistribution, playerActions.length);
 		}
 		
 		public TreeNode(GameState gs, NeuralNet policyNet, NeuralNet valuationNet) {
+			this(gs, policyNet, valuationNet, null);
+		}
+		
+		/**
+		 * Creates the root of a new tree
+		 * 
+		 * If [queue] is not null, this node and all of its successors are evaluated 
+		 * using [queue] rather than [policyNet] and [valuationNet]
+		 */
+		public TreeNode(GameState gs, NeuralNet policyNet, NeuralNet valuationNet, EvaluationQueue queue) {
+			this(gs, policyNet, valuationNet, queue, new TranspositionTable(TRANSPOSITION_TABLE_SIZE), 0, TranspositionTable.key(gs, 0), null);
+			transpositionTable.put(this);
+		}
+		
+		/** [parentFeatures] are the features of the node this is a successor of, or null for a root */
+		private TreeNode(GameState gs, NeuralNet policyNet, NeuralNet valuationNet, EvaluationQueue queue, TranspositionTable table, int depth, long key, NeuralNet.Features parentFeatures) {
 			
 			ArrayList<ArrayList<Simulator.Action>> bothPlayerActions = gs.getPlayerAndOpponentActions();
 			
@@ -292,14 +526,32 @@ public class MCTS {
 			nextUnselectedActions = (playerActions.length > 0 && opponentActions.length > 0 ? new int[] {0,0} : null);
 			
 			policyNetwork = policyNet;
-			assignActionProbabilityDistribution();
-			
 			valuationNetwork = valuationNet;
-			if(valuationNetwork != null) {
-				valuationNetwork.forward_prop(NeuralNet.input(currentState));
-				v_theta = valuationNetwork.nn.get(valuationNetwork.LAYERS)[0].value;				
-			}
+			evaluationQueue = queue;
+			transpositionTable = table;
+			this.depth = depth;
+			this.key = key;
+			terminal = gs.isTerminal();
 			
+			features = new NeuralNet.Features();
+			if(parentFeatures != null)
+				features.copyFrom(parentFeatures);
+			features.encode(currentState);
+			
+			if(evaluationQueue != null) {
+				EvaluationQueue.Evaluation e = evaluationQueue.evaluate(features.x);
+				assignActionProbabilityDistribution(e.policy);
+				v_theta = e.value;
+			}
+			else {
+				policyNetwork.forward_prop(features.x);
+				assignActionProbabilityDistribution(policyNetwork.output());
+				
+				if(valuationNetwork != null) {
+					valuationNetwork.forward_prop(features.x);
+					v_theta = valuationNetwork.output()[0];
+				}
+			}
 			
 		}
 		
@@ -321,43 +573,6 @@ public class MCTS {
 			return playerActions[bestAction].action;
 		}
 		
-		/**
-		 * Return the payout of the terimal node obtained by simulating from this node
-		 * to the end of the game (as used in SMMCTS alg pseudocode)
-		 */
-		public double playout(int playoutDepth) {
-			if(currentState.isTerminal())
-				return currentState.evalTerminalNode();
-			
-			if(playoutDepth > PLAYOUT_MAX_DEPTH) {
-				return v_theta;
-			}
-			
-			
-			// If either player has no actions consider it a terminal node
-			if(playerActions.length == 0 || opponentActions.length == 0)
-				return currentState.evalTerminalNode();
-			
-			// For the player, choose an action randomly with probability assigned to it in actionProbabilityDistribution
-			double cumulativeProbSum = 0;
-			double rand = Math.random();
-			Simulator.Action playerAction = null;
-			for(int i = 0; i < playerActions.length && (playerAction == null); i++) {
-				cumulativeProbSum += actionProbabilityDistribution[i];
-				if(rand <= cumulativeProbSum) {
-					playerAction = playerActions[i].action;
-				}
-			}
-			// For the opponent, just choose a random action
-			Simulator.Action opponentAction = opponentActions[(int)(Math.random() * opponentActions.length)].action;
-			
-			GameState nextGS = currentState.simulateTurn(playerAction, opponentAction);
-			TreeNode nextTreeNode = new TreeNode(nextGS, policyNetwork, valuationNetwork);
-			
-			return nextTreeNode.playout(playoutDepth+1);
-		}
-		
-		
 		/**
 		 * playerActions[i] and opponentActions[j] where
 		 * the actions that simulation was performed on which we
@@ -388,8 +603,8 @@ public class MCTS {
 			int maxActionValueIndex = 0;
 			
 			for(int i = 0; i < playerActions.length; i++) {
-				N[i] = playerActions[i].n;
-				Q[i] = v_theta*(1-LAMBDA) + playerActions[i].X*LAMBDA/playerActions[i].n;
+				N[i] = playerActions[i].getN();
+				Q[i] = v_theta*(1-LAMBDA) + playerActions[i].getX()*LAMBDA/N[i];
 				u[i] = actionProbabilityDistribution[i]/(1 + N[i]);
 				actionValue[i] = Q[i] + u[i];
 				
@@ -409,7 +624,12 @@ public class MCTS {
 		
 		
 		public double SMMCTS() {
-			if(currentState.isTerminal())
+			return SMMCTS(new Playout(policyNetwork, valuationNetwork, evaluationQueue));
+		}
+		
+		/** Same as SMMCTS(), but uses [playout] to play out games from newly expanded nodes */
+		public double SMMCTS(Playout playout) {
+			if(terminal)
 				return currentState.evalTerminalNode();
 			
 			int i, j;
@@ -421,7 +641,11 @@ public class MCTS {
 				i = unexploredActions[0];
 				j = unexploredActions[1];
 				TreeNode sPrime = SuccessorNodes[i][j];
-				u1 = sPrime.playout(0);
+				// A successor that was already in the tree has been played out before, so search through it instead
+				if(unexploredActions[2] == 1)
+					u1 = playout.run(sPrime);
+				else
+					u1 = sPrime.SMMCTS(playout);
 				/*
 				 * We are using Decoupled UCT, so X and n values are stored in matrix
 				 * entries rather than in nodes like the pseudocode suggests
@@ -429,30 +653,819 @@ public class MCTS {
 			}
 			else {
 				int[] selectedActions = select();
+				// If either player has no actions consider it a terminal node
+				if(selectedActions == null)
+					return currentState.evalTerminalNode();
 				i = selectedActions[0];
 				j = selectedActions[1];
 				TreeNode sPrime = SuccessorNodes[i][j];
-				u1 = sPrime.SMMCTS();
+				u1 = sPrime.SMMCTS(playout);
+			}
+			
+			update(i, j, u1);
+			return u1;
+		}
+		
+		/**
+		 * Tree parallel version of SMMCTS(), which can be called on the same tree by
+		 * several threads at once. The networks of [playout] are used to evaluate any 
+		 * nodes created by this call, so each thread should pass its own Playout.
+		 * No lock is held while the networks are evaluated.
+		 * 
+		 * While the simulation through the selected pair of actions is in progress, 
+		 * both actions carry a virtual loss so other threads are less likely to 
+		 * select the same pair.
+		 */
+		public double parallelSMMCTS(Playout playout) {
+			if(terminal)
+				return currentState.evalTerminalNode();
+			
+			int i, j;
+			double u1;
+			
+			int[] unexploredActions = getAndIncrementNextUnselectedActions(playout.policyNetwork, playout.valuationNetwork);
+			if(unexploredActions != null) {
+				i = unexploredActions[0];
+				j = unexploredActions[1];
+				addVirtualLoss(i, j);
+				TreeNode sPrime = SuccessorNodes[i][j];
+				if(unexploredActions[2] == 1) {
+					// Other threads can expand sPrime as soon as it is published, so it is played out from a copy
+					u1 = playout.runFromCopy(sPrime);
+				}
+				else {
+					// A successor that was already in the tree has been played out before, so search through it instead
+					u1 = sPrime.parallelSMMCTS(playout);
+				}
+			}
+			else {
+				int[] selectedActions = select();
+				// If either player has no actions consider it a terminal node
+				if(selectedActions == null)
+					return currentState.evalTerminalNode();
+				i = selectedActions[0];
+				j = selectedActions[1];
+				addVirtualLoss(i, j);
+				TreeNode sPrime = awaitSuccessor(i, j);
+				u1 = sPrime.parallelSMMCTS(playout);
 			}
 			
+			removeVirtualLoss(i, j);
 			update(i, j, u1);
 			return u1;
 		}
 		
+		/** Rewards are in [0, 1] for the player, so the opponent's worst reward is -1 */
+		private void addVirtualLoss(int i, int j) {
+			playerActions[i].addVirtualLoss(0);
+			opponentActions[j].addVirtualLoss(-1);
+		}
+		
+		private void removeVirtualLoss(int i, int j) {
+			playerActions[i].removeVirtualLoss(0);
+			opponentActions[j].removeVirtualLoss(-1);
+		}
+		
+	}
+	
+	/**
+	 * Plays out games from the nodes of a tree without building any more tree nodes
+	 * 
+	 * Each turn of a playout only finds the actions of both players in the current game state, 
+	 * and is simulated in place on the game state of the node the playout started from, which is
+	 * restored once the playout is over. So no other thread may use that node while it is played out
+	 * by run(); runFromCopy() plays out a copy instead.
+	 * The policy network is only evaluated when the player has more than one action, and the 
+	 * valuation network only when the playout reaches PLAYOUT_MAX_DEPTH. The network outputs and 
+	 * action probabilities are written to buffers which are reused by every turn, so a Playout 
+	 * should only be used by one thread at a time.
+	 */
+	public static class Playout {
+		/** Networks used to evaluate the game states of this playout, and any nodes expanded by the same thread */
+		public final NeuralNet policyNetwork;
+		public final NeuralNet valuationNetwork;
+		
+		/** If not null, networks are evaluated using this rather than policyNetwork and valuationNetwork */
+		public final EvaluationQueue evaluationQueue;
+		
+		private double[] policyNetworkOutput;
+		private double[] actionProbabilities = new double[16];
+		private GameState.UndoLog undoLog = new GameState.UndoLog();
+		/** Input of the networks for the last state evaluated, which is updated for each state evaluated */
+		private NeuralNet.Features features = new NeuralNet.Features();
+		
+		public Playout(NeuralNet policyNet, NeuralNet valuationNet, EvaluationQueue queue) {
+			policyNetwork = policyNet;
+			valuationNetwork = valuationNet;
+			evaluationQueue = queue;
+			policyNetworkOutput = new double[policyNet.OUTPUT];
+		}
+		
+		/**
+		 * Return the payout of the terminal node obtained by simulating from [node]
+		 * to the end of the game (as used in SMMCTS alg pseudocode)
+		 * 
+		 * The first turn uses the actions and actionProbabilityDistribution of [node]
+		 */
+		public double run(TreeNode node) {
+			GameState gs = node.currentState;
+			if(node.terminal)
+				return gs.evalTerminalNode();
+			
+			// If either player has no actions consider it a terminal node
+			if(node.playerActions.length == 0 || node.opponentActions.length == 0)
+				return gs.evalTerminalNode();
+			
+			Simulator.Action playerAction = node.playerActions[sample(node.actionProbabilityDistribution, node.playerActions.length)].action;
+			Simulator.Action opponentAction = node.opponentActions[BattleRandom.nextInt(node.opponentActions.length)].action;
+			features.copyFrom(node.features);
+			try {
+				gs.simulateTurnInPlace(playerAction, opponentAction, undoLog);
+				return continuePlayout(gs);
+			}
+			finally {
+				gs.undo(undoLog);
+			}
+		}
+		
+		/**
+		 * Same as run(node), but the game is played out on a copy of the game state of 
+		 * [node], so other threads can use [node] during the playout. Only the first 
+		 * turn, which is simulated using the actions of [node], holds the lock on [node].
+		 */
+		public double runFromCopy(TreeNode node) {
+			if(node.terminal)
+				return node.currentState.evalTerminalNode();
+			
+			// If either player has no actions consider it a terminal node
+			if(node.playerActions.length == 0 || node.opponentActions.length == 0)
+				return node.currentState.evalTerminalNode();
+			
+			Simulator.Action playerAction = node.playerActions[sample(node.actionProbabilityDistribution, node.playerActions.length)].action;
+			Simulator.Action opponentAction = node.opponentActions[BattleRandom.nextInt(node.opponentActions.length)].action;
+			GameState gs;
+			synchronized (node) {
+				gs = node.currentState.simulateTurn(playerAction, opponentAction);
+			}
+			features.copyFrom(node.features);
+			try {
+				return continuePlayout(gs);
+			}
+			finally {
+				// The copy is discarded, so there is nothing to restore
+				undoLog.clear();
+			}
+		}
+		
+		/** Plays out the game from [gs], which has already been played out for one turn */
+		private double continuePlayout(GameState gs) {
+			for(int playoutDepth = 1; ; playoutDepth++) {
+				if(gs.isTerminal())
+					return gs.evalTerminalNode();
+				
+				if(playoutDepth > PLAYOUT_MAX_DEPTH)
+					return valuation(gs);
+				
+				ArrayList<ArrayList<Simulator.Action>> bothPlayerActions = gs.getPlayerAndOpponentActions();
+				ArrayList<Simulator.Action> p1Actions = bothPlayerActions.get(0);
+				ArrayList<Simulator.Action> oppoActions = bothPlayerActions.get(1);
+				
+				if(p1Actions.isEmpty() || oppoActions.isEmpty())
+					return gs.evalTerminalNode();
+				
+				// For the player, choose an action randomly with the probability assigned to it by the policy network
+				Simulator.Action playerAction;
+				if(p1Actions.size() == 1) {
+					playerAction = p1Actions.get(0);
+				}
+				else {
+					evaluatePolicy(gs);
+					if(actionProbabilities.length < p1Actions.size())
+						actionProbabilities = new double[p1Actions.size()];
+					for(int i = 0; i < p1Actions.size(); i++) {
+						actionProbabilities[i] = policyWeight(gs.p1_team, p1Actions.get(i), policyNetworkOutput);
+					}
+					normalize(actionProbabilities, p1Actions.size());
+					playerAction = p1Actions.get(sample(actionProbabilities, p1Actions.size()));
+				}
+				// For the opponent, just choose a random action
+				Simulator.Action opponentAction = oppoActions.get(BattleRandom.nextInt(oppoActions.size()));
+				
+				gs.simulateTurnInPlace(playerAction, opponentAction, undoLog);
+			}
+		}
+		
+		/** Returns an index in [0, length) chosen randomly with the probabilities in [probabilities] */
+		private static int sample(double[] probabilities, int length) {
+			double cumulativeProbSum = 0;
+			double rand = BattleRandom.nextDouble();
+			for(int i = 0; i < length; i++) {
+				cumulativeProbSum += probabilities[i];
+				if(rand <= cumulativeProbSum)
+					return i;
+			}
+			// Only reached if the probabilities add up to slightly less than 1
+			return length-1;
+		}
+		
+		/** Set policyNetworkOutput to the output of the policy network for [gs] */
+		private void evaluatePolicy(GameState gs) {
+			features.encode(gs);
+			if(evaluationQueue != null) {
+				System.arraycopy(evaluationQueue.evaluate(features.x).policy, 0, policyNetworkOutput, 0, policyNetworkOutput.length);
+				return;
+			}
+			policyNetwork.forward_prop(features.x);
+			System.arraycopy(policyNetwork.output(), 0, policyNetworkOutput, 0, policyNetworkOutput.length);
+		}
+		
+		/** Returns the output of the valuation network for [gs], or 0 if there is no valuation network */
+		private double valuation(GameState gs) {
+			if(evaluationQueue == null && valuationNetwork == null)
+				return 0;
+			features.encode(gs);
+			if(evaluationQueue != null)
+				return evaluationQueue.evaluate(features.x).value;
+			valuationNetwork.forward_prop(features.x);
+			return valuationNetwork.output()[0];
+		}
+	}
+	
+	/**
+	 * An MCTS search that keeps its tree from one turn to the next
+	 * 
+	 * After each turn, observe() should be called with the actions that were actually
+	 * played. On the next call to chooseMove, the successor node for that pair of actions 
+	 * becomes the new root, so the statistics gathered for it on previous turns are kept.
+	 * 
+	 * Successor nodes are only sampled outcomes of a turn, so the observed game state can 
+	 * differ from the successor's (e.g. a different damage roll, or the opponent revealing 
+	 * a move the successor's subtree was searched without). If the states differ:
+	 * - if both active pokemon are the same, a new root is built for the observed state,
+	 *   and the X and n of its actions are carried over from the successor's matching actions
+	 * - otherwise, a new root is built from scratch
+	 */
+	public static class Session {
+		private NeuralNet policyNetwork;
+		private NeuralNet valuationNetwork;
+		private EvaluationQueue evaluationQueue;
+		
+		/** Root of the tree searched on the last call to chooseMove, or null before the first call */
+		private TreeNode root;
+		
+		/** 
+		 * Successor of [root] for the actions passed to the last call to observe(), or null
+		 * if that pair of actions was not in the tree 
+		 */
+		private TreeNode observedSuccessor;
+		
+		public Session(NeuralNet policyNetwork, NeuralNet valuationNetwork) {
+			this(policyNetwork, valuationNetwork, null);
+		}
+		
+		/**
+		 * If [queue] is not null, the session's trees are evaluated using [queue], so 
+		 * sessions for games played on different threads can share evaluation batches
+		 */
+		public Session(NeuralNet policyNetwork, NeuralNet valuationNetwork, EvaluationQueue queue) {
+			this.policyNetwork = policyNetwork;
+			this.valuationNetwork = valuationNetwork;
+			this.evaluationQueue = queue;
+		}
+		
+		/**
+		 * Same as MCTS.chooseMove(gs, ...), except that the search starts from whatever
+		 * part of the previous turn's tree still applies to [gs]
+		 * 
+		 * The tree is built from a copy of [gs] (so that changes made to [gs] after this call 
+		 * don't affect it), but the returned action refers to the pokemon in [gs]
+		 */
+		public Simulator.Action chooseMove(GameState gs) {
+			return chooseMove(gs, SearchBudget.DEFAULT);
+		}
+		
+		/** Same as chooseMove(gs), but searching within [budget] */
+		public Simulator.Action chooseMove(GameState gs, SearchBudget budget) {
+			long startTime = System.nanoTime();
+			root = nextRoot(gs);
+			observedSuccessor = null;
+			
+			search(root, budget, startTime);
+			
+			return equivalentAction(root.getBestAction(), gs.p1_team.getActions(gs.p2_active.isAlive()));
+		}
+		
+		/**
+		 * Record that the player used [playerAction] and the opponent used [opponentAction]
+		 * on the turn after the last call to chooseMove
+		 */
+		public void observe(Simulator.Action playerAction, Simulator.Action opponentAction) {
+			observedSuccessor = null;
+			if(root == null)
+				return;
+			
+			int i = indexOfEquivalentAction(root.playerActions, playerAction, false);
+			int j = indexOfEquivalentAction(root.opponentActions, opponentAction, true);
+			if(i != -1 && j != -1) {
+				observedSuccessor = root.SuccessorNodes[i][j];
+			}
+		}
+		
+		/** Discard the tree, so the next search starts from scratch */
+		public void reset() {
+			root = null;
+			observedSuccessor = null;
+		}
+		
+		/** Returns the node that the search from [gs] should use as its root */
+		private TreeNode nextRoot(GameState gs) {
+			TreeNode successor = observedSuccessor;
+			if(successor != null && sameState(successor.currentState, gs)) {
+				return successor;
+			}
+			
+			TreeNode newRoot = new TreeNode(gs.clone(), policyNetwork, valuationNetwork, evaluationQueue);
+			
+			if(successor != null && 
+					successor.currentState.p1_team.activePokemon.speciesData == gs.p1_team.activePokemon.speciesData &&
+					successor.currentState.p2_active.speciesData == gs.p2_active.speciesData) {
+				carryOverStatistics(successor.playerActions, newRoot.playerActions, false);
+				carryOverStatistics(successor.opponentActions, newRoot.opponentActions, true);
+			}
+			
+			return newRoot;
+		}
+		
+		/** 
+		 * Add the X and n of each action in [from] to the equivalent action in [to], if there is one
+		 * ([opponent] is whether they are the opponent's actions, see equivalentOpponentActions) 
+		 */
+		private static void carryOverStatistics(ActionData[] from, ActionData[] to, boolean opponent) {
+			for(ActionData ad : from) {
+				int index = indexOfEquivalentAction(to, ad.action, opponent);
+				if(index != -1) {
+					to[index].add(ad.getX(), ad.getN());
+				}
+			}
+		}
+		
+		/**
+		 * Returns whether the parts of [gs1] and [gs2] that the search depends on are the
+		 * same: every pokemon's hp, status and stat modifications, the moves and pp of the 
+		 * player's pokemon, which pokemon are active, which of the opponent's pokemon have 
+		 * been seen and which of their moves are known
+		 * 
+		 * The moves and pp of the opponent's pokemon themselves aren't compared, since the 
+		 * moves are a guess (see GameState.p2_pokemon) and the search deducts pp from the 
+		 * move slots of that guess rather than the slots the opponent's moves are really in.
+		 */
+		private static boolean sameState(GameState gs1, GameState gs2) {
+			if(!samePokemon(gs1.p1_team.activePokemon, gs2.p1_team.activePokemon, false) || 
+					!samePokemon(gs1.p2_active, gs2.p2_active, true) ||
+					gs1.p1_team.pokemonList.size() != gs2.p1_team.pokemonList.size() ||
+					gs1.p2_pokemon.size() != gs2.p2_pokemon.size())
+				return false;
+			
+			for(int i = 0; i < gs1.p1_team.pokemonList.size(); i++) {
+				if(!samePokemon(gs1.p1_team.pokemonList.get(i), gs2.p1_team.pokemonList.get(i), false))
+					return false;
+			}
+			
+			for(Map.Entry<Pokemon, HashSet<Move>> e1 : gs1.p2_pokemon.entrySet()) {
+				boolean found = false;
+				for(Map.Entry<Pokemon, HashSet<Move>> e2 : gs2.p2_pokemon.entrySet()) {
+					if(e1.getKey().speciesData == e2.getKey().speciesData) {
+						found = samePokemon(e1.getKey(), e2.getKey(), true) && e1.getValue().equals(e2.getValue());
+						break;
+					}
+				}
+				if(!found)
+					return false;
+			}
+			
+			return true;
+		}
+		
+		/** 
+		 * [opponent] is whether [p1] and [p2] are the opponent's pokemon, whose moves and pp 
+		 * aren't compared (see sameState). For the same reason, only whether their mimic is 
+		 * active is compared, not the move slot it replaced.
+		 */
+		private static boolean samePokemon(Pokemon p1, Pokemon p2, boolean opponent) {
+			Pokemon.Status s1 = p1.status;
+			Pokemon.Status s2 = p2.status;
+			return p1.speciesData == p2.speciesData && 
+				p1.currHp == p2.currHp &&
+				(opponent || (Arrays.equals(p1.moves, p2.moves) && Arrays.equals(p1.pp, p2.pp))) &&
+				s1.getWord(0) == s2.getWord(0) && 
+				s1.getSubstituteHp() == s2.getSubstituteHp() && 
+				s1.getBideDamage() == s2.getBideDamage() && 
+				(opponent ? (s1.getMimicIndex() == -1) == (s2.getMimicIndex() == -1) : s1.getMimicIndex() == s2.getMimicIndex()) && 
+				(s1.transformed == null) == (s2.transformed == null);
+		}
+	}
+	
+	/**
+	 * Returns whether [a1] and [a2] are the same action, possibly for pokemon in 
+	 * different (copies of) game states: attacks with the same move and user species
+	 * (deducting pp from the same move slot), or switches to the same species
+	 */
+	public static boolean equivalentActions(Simulator.Action a1, Simulator.Action a2) {
+		if(a1.getType() != a2.getType())
+			return false;
+		
+		if(a1.getType() == Simulator.ActionType.ATTACK) {
+			Simulator.AttackAction aa1 = (Simulator.AttackAction)a1;
+			Simulator.AttackAction aa2 = (Simulator.AttackAction)a2;
+			return aa1.move == aa2.move && aa1.deductPPIndex == aa2.deductPPIndex && aa1.user.speciesData == aa2.user.speciesData;
+		}
+		else {
+			Simulator.SwitchAction sa1 = (Simulator.SwitchAction)a1;
+			Simulator.SwitchAction sa2 = (Simulator.SwitchAction)a2;
+			return sa1.switchTo.speciesData == sa2.switchTo.speciesData;
+		}
+	}
+	
+	/**
+	 * Same as equivalentActions, for actions of the opponent: attacks only need the same 
+	 * move and user species. Until all of its moves are revealed, the opponent's attacks 
+	 * in the tree come from a guessed moveset, so their move slots don't match the slots
+	 * of the moves the opponent really uses.
+	 */
+	public static boolean equivalentOpponentActions(Simulator.Action a1, Simulator.Action a2) {
+		if(a1.getType() == Simulator.ActionType.ATTACK && a2.getType() == Simulator.ActionType.ATTACK) {
+			Simulator.AttackAction aa1 = (Simulator.AttackAction)a1;
+			Simulator.AttackAction aa2 = (Simulator.AttackAction)a2;
+			return aa1.move == aa2.move && aa1.user.speciesData == aa2.user.speciesData;
+		}
+		return equivalentActions(a1, a2);
+	}
+	
+	/** 
+	 * Returns the index of the action in [actions] equivalent to [a], or -1 if there is none
+	 * ([opponent] is whether they are the opponent's actions, see equivalentOpponentActions)
+	 */
+	private static int indexOfEquivalentAction(ActionData[] actions, Simulator.Action a, boolean opponent) {
+		for(int i = 0; i < actions.length; i++) {
+			if(opponent ? equivalentOpponentActions(actions[i].action, a) : equivalentActions(actions[i].action, a))
+				return i;
+		}
+		return -1;
+	}
+	
+	/** Returns the action in [actions] equivalent to [a] */
+	private static Simulator.Action equivalentAction(Simulator.Action a, List<Simulator.Action> actions) {
+		for(Simulator.Action candidate : actions) {
+			if(equivalentActions(candidate, a))
+				return candidate;
+		}
+		throw new RuntimeException("No action equivalent to " + a);
 	}
 	
 	public static Simulator.Action chooseMove(GameState gs, NeuralNet policyNetwork, NeuralNet valuationNetwork) {
+		return chooseMove(gs, policyNetwork, valuationNetwork, SearchBudget.DEFAULT);
+	}
+	
+	public static Simulator.Action chooseMove(GameState gs, NeuralNet policyNetwork, NeuralNet valuationNetwork, SearchBudget budget) {
+		Simulator.Action forcedAction = forcedAction(gs);
+		if(forcedAction != null)
+			return forcedAction;
+		
+		long startTime = System.nanoTime();
 		TreeNode root = new TreeNode(gs, policyNetwork, valuationNetwork);
+		search(root, budget, startTime);
+		return root.getBestAction();
+	}
+	
+	/**
+	 * Run simulations from [root] until [budget] is exhausted, counting the time
+	 * since [startTime] (from System.nanoTime()), or not at all if the player only
+	 * has one action
+	 * 
+	 * [startTime] is when the caller started searching rather than when this call 
+	 * started, so that time spent building the tree, or waiting for a worker thread,
+	 * counts against the budget too
+	 * 
+	 * No events are recorded for the simulated turns (see BattleEvents)
+	 */
+	private static void search(TreeNode root, SearchBudget budget, long startTime) {
+		if(root.playerActions.length <= 1)
+			return;
+		
+		Playout playout = new Playout(root.policyNetwork, root.valuationNetwork, root.evaluationQueue);
+		BattleEvents previousEvents = BattleEvents.bind(null);
+		try {
+			int iterations = 0;
+			while(!budget.exhausted(root, iterations, startTime)) {
+				root.SMMCTS(playout);
+				iterations++;
+			}
+		}
+		finally {
+			BattleEvents.bind(previousEvents);
+		}
+	}
+	
+	/**
+	 * Returns the only action the player can take in [gs], or null
+	 * if the player has a choice of actions
+	 */
+	private static Simulator.Action forcedAction(GameState gs) {
+		ArrayList<Simulator.Action> actions = gs.p1_team.getActions(gs.p2_active.isAlive());
+		return (actions.size() == 1 ? actions.get(0) : null);
+	}
+	
+	/**
+	 * Returns the weight that [policyNetworkOutput] places on [action] of a player with [team]:
+	 * the output for the move slot used by an attack, or for the position of the pokemon switched 
+	 * to among the team's pokemon other than the active one, if that is more than 0
+	 * 
+	 * Actions that have no output of the network (e.g. struggle) have a weight of 0
+	 */
+	private static double policyWeight(Team team, Simulator.Action action, double[] policyNetworkOutput) {
+		Pokemon active = team.activePokemon;
+		double weight = 0;
+		if(action.getType().equals(Simulator.ActionType.ATTACK)) {
+			if(!active.isAlive())
+				return 0;
+			Move m = ((Simulator.AttackAction)action).move;
+			for(int i = 0; i <= 3; i++) {
+				if(active.pp[i] > 0 && active.moves[i] != null && active.moves[i] == m) {
+					weight = Math.max(policyNetworkOutput[i], 0);
+				}
+			}
+		}
+		else if(action.getType().equals(Simulator.ActionType.SWITCH)) {
+			Pokemon switchTo = ((Simulator.SwitchAction)action).switchTo;
+			if(!switchTo.isAlive())
+				return 0;
+			int index = 0;
+			for(Pokemon p : team.pokemonList) {
+				if(p == active)
+					continue;
+				if(p == switchTo && index+4 < policyNetworkOutput.length) {
+					weight = Math.max(policyNetworkOutput[index+4], 0);
+				}
+				index++;
+			}
+		}
+		return weight;
+	}
+	
+	/**
+	 * Scale the first [length] weights in [weights] so that they add to 1, 
+	 * or if they are all 0, set them to be uniform
+	 */
+	private static void normalize(double[] weights, int length) {
+		double totalWeight = 0;
+		for(int i = 0; i < length; i++) {
+			totalWeight += weights[i];
+		}
+		
+		for(int i = 0; i < length; i++) {
+			weights[i] = (totalWeight != 0 ? weights[i]/totalWeight : 1.0/length);
+		}
+	}
+	
+	/**
+	 * Root parallel version of chooseMove using [ROOT_PARALLEL_TREES] trees
+	 */
+	public static Simulator.Action chooseMoveRootParallel(GameState gs, NeuralNet policyNetwork, NeuralNet valuationNetwork) {
+		return chooseMoveRootParallel(gs, policyNetwork, valuationNetwork, ROOT_PARALLEL_TREES, SearchBudget.DEFAULT);
+	}
+	
+	/**
+	 * Search [numTrees] independent trees rooted at [gs] concurrently on the worker pool 
+	 * (splitting [budget] between them), then merge the X and n of each of the 
+	 * player's root actions across all trees before choosing the best action
+	 * 
+	 * Each tree gets its own copy of [gs] and of the networks (since forward prop
+	 * overwrites the values stored in the network's neurons), except for the first 
+	 * tree, which uses the originals. The returned action is an action of the first
+	 * tree, so it refers to the pokemon in [gs].
+	 * 
+	 * At most [ROOT_PARALLEL_TREES] trees (the size of the worker pool) are searched.
+	 * Any more would only start once other trees are done, and with a time limit
+	 * they would get little or no time.
+	 */
+	public static Simulator.Action chooseMoveRootParallel(GameState gs, NeuralNet policyNetwork, NeuralNet valuationNetwork, int numTrees, SearchBudget budget) {
+		numTrees = Math.min(numTrees, ROOT_PARALLEL_TREES);
+		if(numTrees <= 1)
+			return chooseMove(gs, policyNetwork, valuationNetwork, budget);
+		
+		Simulator.Action forcedAction = forcedAction(gs);
+		if(forcedAction != null)
+			return forcedAction;
+		
+		// All trees share the start time, so that with a time limit, trees that wait 
+		// for a worker thread get less time instead of pushing back the deadline
+		long startTime = System.nanoTime();
+		
+		// Copies must all be made before any tree is built, since building a tree 
+		// temporarily modifies the movesets of the opponent's pokemon in its game state
+		GameState[] states = new GameState[numTrees];
+		NeuralNet[] policyNetworks = new NeuralNet[numTrees];
+		NeuralNet[] valuationNetworks = new NeuralNet[numTrees];
+		states[0] = gs;
+		policyNetworks[0] = policyNetwork;
+		valuationNetworks[0] = valuationNetwork;
+		for(int k = 1; k < numTrees; k++) {
+			states[k] = gs.clone();
+			policyNetworks[k] = new NeuralNet(policyNetwork);
+			valuationNetworks[k] = (valuationNetwork != null ? new NeuralNet(valuationNetwork) : null);
+		}
 		
-		long startTime = System.currentTimeMillis();
+		SearchBudget treeBudget = budget.perTree(numTrees);
 		
-		// Run simulations until [SimulationTimeLimitSeconds] seconds have elapsed
-		while(System.currentTimeMillis() - startTime < (long)(SIMULATION_TIME_LIMIT_SECONDS*1000)) {
-			root.SMMCTS();
+		List<Future<TreeNode>> searches = new ArrayList<Future<TreeNode>>();
+		for(int k = 0; k < numTrees; k++) {
+			GameState state = states[k];
+			NeuralNet policyNet = policyNetworks[k];
+			NeuralNet valuationNet = valuationNetworks[k];
+			SplittableRandom random = BattleRandom.split();
+			searches.add(getWorkerPool().submit(() -> {
+				SplittableRandom previousRandom = BattleRandom.bind(random);
+				try {
+					TreeNode root = new TreeNode(state, policyNet, valuationNet);
+					search(root, treeBudget, startTime);
+					return root;
+				}
+				finally {
+					BattleRandom.bind(previousRandom);
+				}
+			}));
+		}
+		
+		TreeNode[] roots = new TreeNode[numTrees];
+		try {
+			for(int k = 0; k < numTrees; k++) {
+				roots[k] = searches.get(k).get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for root parallel search");
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException("Error in root parallel search", e.getCause());
+		}
+		
+		// Merge the statistics of every tree into the first one. All trees are built from
+		// copies of the same game state, so their player actions are in the same order.
+		for(int k = 1; k < numTrees; k++) {
+			if(roots[k].playerActions.length != roots[0].playerActions.length)
+				throw new RuntimeException("Root parallel trees have different player actions");
+			
+			for(int i = 0; i < roots[0].playerActions.length; i++) {
+				roots[0].playerActions[i].add(roots[k].playerActions[i].getX(), roots[k].playerActions[i].getN());
+			}
+		}
+		
+		return roots[0].getBestAction();
+	}
+	
+	/**
+	 * Tree parallel version of chooseMove using [ROOT_PARALLEL_TREES] threads
+	 */
+	public static Simulator.Action chooseMoveTreeParallel(GameState gs, NeuralNet policyNetwork, NeuralNet valuationNetwork) {
+		return chooseMoveTreeParallel(gs, policyNetwork, valuationNetwork, ROOT_PARALLEL_TREES, SearchBudget.DEFAULT);
+	}
+	
+	/**
+	 * Search a single tree rooted at [gs] with [numThreads] threads of the worker pool
+	 * until [budget] is exhausted (see TreeNode.parallelSMMCTS). In ITERATIONS mode, 
+	 * the number of simulations is the total over all threads.
+	 * 
+	 * The first thread uses the given networks, and every other thread uses its own 
+	 * copies of them.
+	 * 
+	 * At most [ROOT_PARALLEL_TREES] threads (the size of the worker pool) are used,
+	 * since the tasks of any more threads would only start once the others are done.
+	 */
+	public static Simulator.Action chooseMoveTreeParallel(GameState gs, NeuralNet policyNetwork, NeuralNet valuationNetwork, int numThreads, SearchBudget budget) {
+		numThreads = Math.min(numThreads, ROOT_PARALLEL_TREES);
+		if(numThreads <= 1)
+			return chooseMove(gs, policyNetwork, valuationNetwork, budget);
+		
+		Simulator.Action forcedAction = forcedAction(gs);
+		if(forcedAction != null)
+			return forcedAction;
+		
+		long startTime = System.nanoTime();
+		TreeNode root = new TreeNode(gs, policyNetwork, valuationNetwork);
+		
+		AtomicInteger iterations = new AtomicInteger(0);
+		
+		List<Future<?>> searches = new ArrayList<Future<?>>();
+		for(int k = 0; k < numThreads; k++) {
+			NeuralNet policyNet = (k == 0 ? policyNetwork : new NeuralNet(policyNetwork));
+			NeuralNet valuationNet = (k == 0 || valuationNetwork == null ? valuationNetwork : new NeuralNet(valuationNetwork));
+			Playout playout = new Playout(policyNet, valuationNet, null);
+			SplittableRandom random = BattleRandom.split();
+			searches.add(getWorkerPool().submit(() -> {
+				SplittableRandom previousRandom = BattleRandom.bind(random);
+				try {
+					while(!budget.exhausted(root, iterations.getAndIncrement(), startTime)) {
+						root.parallelSMMCTS(playout);
+					}
+				}
+				finally {
+					BattleRandom.bind(previousRandom);
+				}
+			}));
+		}
+		
+		try {
+			for(Future<?> search : searches) {
+				search.get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for tree parallel search");
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException("Error in tree parallel search", e.getCause());
 		}
 		
 		return root.getBestAction();
 	}
+	
+	/**
+	 * Same as chooseMoveTreeParallel, but the threads evaluate the nodes they create 
+	 * in batches, by sharing an EvaluationQueue (with one batch slot per thread) 
+	 * instead of each using their own copies of the networks
+	 * 
+	 * [maxWaitNanos] is how long a thread waits for the other threads to fill up a
+	 * batch before evaluating a partial batch
+	 * 
+	 * As in chooseMoveTreeParallel, at most [ROOT_PARALLEL_TREES] threads are used, and
+	 * the batches are sized for the threads actually used. A batch sized for threads 
+	 * that are still queued could never fill up, so every batch would wait [maxWaitNanos].
+	 */
+	public static Simulator.Action chooseMoveTreeParallelBatched(GameState gs, NeuralNet policyNetwork, NeuralNet valuationNetwork, int numThreads, long maxWaitNanos, SearchBudget budget) {
+		numThreads = Math.min(numThreads, ROOT_PARALLEL_TREES);
+		if(numThreads <= 1)
+			return chooseMove(gs, policyNetwork, valuationNetwork, budget);
+		
+		Simulator.Action forcedAction = forcedAction(gs);
+		if(forcedAction != null)
+			return forcedAction;
+		
+		long startTime = System.nanoTime();
+		EvaluationQueue queue = new EvaluationQueue(policyNetwork, valuationNetwork, numThreads, maxWaitNanos);
+		TreeNode root = new TreeNode(gs, policyNetwork, valuationNetwork, queue);
+		
+		AtomicInteger iterations = new AtomicInteger(0);
+		
+		List<Future<?>> searches = new ArrayList<Future<?>>();
+		for(int k = 0; k < numThreads; k++) {
+			Playout playout = new Playout(policyNetwork, valuationNetwork, queue);
+			SplittableRandom random = BattleRandom.split();
+			searches.add(getWorkerPool().submit(() -> {
+				SplittableRandom previousRandom = BattleRandom.bind(random);
+				try {
+					while(!budget.exhausted(root, iterations.getAndIncrement(), startTime)) {
+						root.parallelSMMCTS(playout);
+					}
+				}
+				finally {
+					BattleRandom.bind(previousRandom);
+				}
+			}));
+		}
+		
+		try {
+			for(Future<?> search : searches) {
+				search.get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for tree parallel search");
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException("Error in tree parallel search", e.getCause());
+		}
+		
+		return root.getBestAction();
+	}
+	
+	/**
+	 * Returns the pool root and tree parallel searches are run on, creating it if it 
+	 * doesn't exist yet. The threads are daemon threads so that an idle pool 
+	 * doesn't keep the program running.
+	 */
+	private static synchronized ExecutorService getWorkerPool() {
+		if(workerPool == null) {
+			workerPool = Executors.newFixedThreadPool(ROOT_PARALLEL_TREES, r -> {
+				Thread t = new Thread(r, "MCTS-worker");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return workerPool;
+	}
 
 	public static void main(String[] args) {
 		Pokemon bulb = new Pokemon("bulbasaur", new String[] {"surf", "thunderbolt", "quickattack", "twineedle"}, 100);
@@ -1,31 +1,63 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Consumer;
 import java.util.ArrayList;
 
 public class Move {
-	public static class MoveDamage {
-		public Pokemon user;
-		public Pokemon target;
-		public int damage;
-		public MoveDamage(Pokemon u, Pokemon t, int d) {
-			user = u;
-			target = t;
-			damage = d;
-		}
+	/** Secondary effect of a move, applied after [user] deals [damage] to [target] with it */
+	public static interface Effect {
+		public void apply(Pokemon user, Pokemon target, int damage);
+	}
+	
+	/** 
+	 * How use() executes a move, for moves which don't just deal normal damage.
+	 * Given by the kind column of moves.csv.
+	 */
+	public enum Kind {
+		/** Deals normal damage */
+		NORMAL,
+		/** Recharging after a move like hyperbeam */
+		RECHARGE,
+		/** Charges on the first turn and attacks on the second */
+		CHARGE,
+		/** Always deals 40 damage */
+		FIXED_DAMAGE,
+		/** Deals damage equal to the user's level */
+		LEVEL_DAMAGE,
+		/** Deals random damage between 1 and 1.5 times the user's level */
+		PSYWAVE,
+		/** Deals half of the target's hp */
+		SUPER_FANG,
+		/** Uses the last move used on the user */
+		MIRROR_MOVE,
+		/** Deals double the last physical damage taken */
+		COUNTER,
+		/** Stores damage for 2-3 turns and deals it back doubled */
+		BIDE,
+		/** Hits 2-5 times */
+		MULTI_HIT,
+		/** Deals normal damage, but hurts the user if it misses */
+		CRASH
 	}
 	
 	private static Map<String, Move> moves;
+	/** movesById[i] is the move with id i */
+	private static Move[] movesById;
 
 	public String name;
+	/** Index of the move in the list of all moves sorted by name, assigned when the moves are loaded */
+	public int id;
 	public int maxPP, power;
 	public int accuracy; /** Base accuracy of a move, or -1 if it doesn't check for accuracy */
 	public Type type;
 	public boolean highCritRatio;
 	public int priority;
-	public Consumer<MoveDamage> secondaryEffect;
+	public Kind kind;
+	public Effect secondaryEffect;
 	
 	// Variables to describe the secondary effect
 	public double health_decrease, stat_boost, status_chance;
@@ -52,120 +84,112 @@ public class Move {
 			target = target.status.transformed;
 		
 		
-		if(this.name.equals("RECHARGE")) {
-			Simulator.addMessage(user.species + " recharged");
-			user.status.recharge = false;
+		if(kind == Kind.RECHARGE) {
+			BattleEvents.emit(BattleEvents.Type.RECHARGED, user.species);
+			user.status.setRecharge(false);
 			return;
 		}
 		
 		// Check for status conditions that would prevent the move from being executed.
-		if (user.status.paralyze && Math.random() < 0.25) {
-			Simulator.addMessage(user.species + " is fully paralyzed");
+		if (user.status.isParalyze() && BattleRandom.nextDouble() < 0.25) {
+			BattleEvents.emit(BattleEvents.Type.FULLY_PARALYZED, user.species);
 			return;
 		}
-		if (user.status.freeze) {
-			Simulator.addMessage(user.species + " is frozen solid");
+		if (user.status.isFreeze()) {
+			BattleEvents.emit(BattleEvents.Type.FROZEN_SOLID, user.species);
 			return;
 		}
-		if (user.status.sleep_turns_left > 0) {
-			if(user.status.sleep_turns_left == 1)
-				Simulator.addMessage(user.species + " woke up");
+		if (user.status.getSleepTurnsLeft() > 0) {
+			if(user.status.getSleepTurnsLeft() == 1)
+				BattleEvents.emit(BattleEvents.Type.WOKE_UP, user.species);
 			else
-				Simulator.addMessage(user.species + " is asleep");
-			user.status.sleep_turns_left--;
+				BattleEvents.emit(BattleEvents.Type.ASLEEP, user.species);
+			user.status.setSleepTurnsLeft(user.status.getSleepTurnsLeft() - 1);
 			return;
 		}
 		// If the pokemon hurt itself in its confusion, apply damage and return.
-		if (user.status.confuse_turns_left > 0) {
-			Simulator.addMessage(user.species + " is confused");
-			user.status.confuse_turns_left--;
-			if(Math.random() < 0.5) {
+		if (user.status.getConfuseTurnsLeft() > 0) {
+			BattleEvents.emit(BattleEvents.Type.CONFUSED, user.species);
+			user.status.setConfuseTurnsLeft(user.status.getConfuseTurnsLeft() - 1);
+			if(BattleRandom.nextDouble() < 0.5) {
 				int damage = getMove("CONFUSED").damageDealt(user, user);
 				user.currHp -= damage;
-				Simulator.addMessage(user.species + " hurt itself in confusion (" + damage + ")");
+				BattleEvents.emit(BattleEvents.Type.CONFUSION_DAMAGE, user.species, damage);
 				return;
 			}
 		}
 
-		Simulator.addMessage(user.species + " used " + this.name);
+		BattleEvents.moveUsed(user.species, this);
 		
 		// special case where move requires charging
-		if (name.equals("skyattack")) {
-			if(!user.status.charge) {
-				user.status.charge = true;
-				Simulator.addMessage(user.species + " began charging ");
+		if (kind == Kind.CHARGE) {
+			if(!user.status.isCharge()) {
+				user.status.setCharge(true);
+				BattleEvents.emit(BattleEvents.Type.CHARGING, user.species);
 				return;
 			}
 			else {
-				user.status.charge = false;
+				user.status.setCharge(false);
 			}
 		}
 		
-		int modifiedAccuracy = 
-			(int)(
-				accuracy * 
-				Math.pow(1 + 0.5*user.status.statMod[5], user.status.statMod[5] > 0 ? 1 : -1) * 
-				Math.pow(1 + 0.5*target.status.statMod[6], target.status.statMod[6] > 0 ? -1 : 1)
-			);
-		
-		// Accuracy Check
-		if((accuracy != -1 && (Math.random() * 100) > modifiedAccuracy)) {
+		// Accuracy Check, where the user's accuracy raises and the target's evasion lowers the accuracy
+		if(accuracy != -1 && (BattleRandom.nextDouble() * 100) > 
+				Pokemon.applyStage(Pokemon.applyStage(accuracy, user.status.getStatMod(5)), -target.status.getStatMod(6))) {
 			// The attack missed
-			if(this.name.equals("highjumpkick")) {
+			if(kind == Kind.CRASH) {
 				user.currHp -= 1;
 			}
-			Simulator.addMessage("The attack missed!");
+			BattleEvents.emit(BattleEvents.Type.MISS, user.species);
 			return;
 		}
 		
 		int damage;
-		// special damage calculation cases
-		if (name.equals("dragonrage")) {
-			damage = 40;
-		}
-		else if (name.equals("nightshade") || name.equals("seismictoss")) {
-			damage = user.level;
-		}
-		else if (name.equals("psywave")) {
-			damage = (int)(Math.random() * 1.5 * user.level) + 1;
-		}
-		else if (name.equals("superfang")) {
-			damage = target.currHp/2;
-		}
-		// special case where move depends on opponent's moveset
-		else if (name.equals("mirrormove")) {
-			if (target.lastMoveUsed != null && 
-					user.lastAttacker.equals(target.species) && 
-					!target.lastMoveUsed.name.equals("mirrormove")) {
-				damage = getMove(target.lastMoveUsed.name).damageDealt(user, target);
-			}
-			else {
+		switch (kind) {
+			// special damage calculation cases
+			case FIXED_DAMAGE:
+				damage = 40;
+				break;
+			case LEVEL_DAMAGE:
+				damage = user.level;
+				break;
+			case PSYWAVE:
+				damage = (int)(BattleRandom.nextDouble() * 1.5 * user.level) + 1;
+				break;
+			case SUPER_FANG:
+				damage = target.currHp/2;
+				break;
+			// special case where move depends on opponent's moveset
+			case MIRROR_MOVE:
+				if (target.lastMoveUsed != null && 
+						target.species.equals(user.lastAttacker) && 
+						target.lastMoveUsed.kind != Kind.MIRROR_MOVE) {
+					damage = target.lastMoveUsed.damageDealt(user, target);
+				}
+				else {
+					damage = 0;
+				}
+				break;
+			case COUNTER:
+				damage = user.status.getCounterDamage()*2;
+				break;
+			case BIDE:
 				damage = 0;
-			}
-		}
-		else if(name.equals("counter")) {
-			damage = user.status.counter_damage*2;
-		}
-		else if(name.equals("bide")) {
-			damage = 0;
-			if(user.status.bide_turns_left == 0) {
-				user.status.bide_turns_left = (int)((Math.random() * 2) + 2);
-			}
-			else {
-				if(user.status.bide_turns_left == 1) {
-					damage = user.status.bide_damage*2;
-					user.status.bide_damage = 0;
+				if(user.status.getBideTurnsLeft() == 0) {
+					user.status.setBideTurnsLeft(BattleRandom.nextInt(2) + 2);
 				}
-				user.status.bide_turns_left--;
-			}
-		}
-		else {
-			// Normal damage
-			damage = damageDealt(user, target);
-			
+				else {
+					if(user.status.getBideTurnsLeft() == 1) {
+						damage = user.status.getBideDamage()*2;
+						user.status.setBideDamage(0);
+					}
+					user.status.setBideTurnsLeft(user.status.getBideTurnsLeft() - 1);
+				}
+				break;
 			// special case where number of hits is random (so damage is not constant)
-			if (name.equals("pinmissle")) {
-				double rand = Math.random();
+			case MULTI_HIT:
+				damage = damageDealt(user, target);
+				double rand = BattleRandom.nextDouble();
 				if (rand < 0.375) {
 					damage *= 2;
 				}
@@ -178,31 +202,34 @@ public class Move {
 				else {
 					damage *= 5;
 				}
-			}
+				break;
+			default:
+				// Normal damage
+				damage = damageDealt(user, target);
 		}
 		
-		if(target.status.substitute_hp > 0) {
-			damage = Math.min(damage, target.status.substitute_hp);
-			target.status.substitute_hp -= damage;
+		if(target.status.getSubstituteHp() > 0) {
+			damage = Math.min(damage, target.status.getSubstituteHp());
+			target.status.setSubstituteHp(target.status.getSubstituteHp() - damage);
 			if(damage > 0) {
-				Simulator.addMessage(target.species + "'s substitute took " + damage + " damage (" + target.status.substitute_hp + ")");
+				BattleEvents.emit(BattleEvents.Type.SUBSTITUTE_DAMAGE, target.species, damage, target.status.getSubstituteHp(), 0);
 			}
 		}
 		else {
 			target.currHp = Math.max(0, target.currHp - damage);
 			if (damage > 0) {
-				Simulator.addMessage(target.species + " lost " + damage + " hp (" + target.currHp + "/" + target.maxHp + ")");
+				BattleEvents.emit(BattleEvents.Type.DAMAGE, target.species, damage, target.currHp, target.maxHp);
 			}
 		}
 		
 		// If this was a physical move, store damage
 		if(this.type.isPhysical())
-			target.status.counter_damage = damage;
+			target.status.setCounterDamage(damage);
 		
 		// Save bide damage
-		if(target.status.bide_turns_left > 0) {
-			target.status.bide_damage += damage;
-			Simulator.addMessage(target.species + " is storing damage " + (target.status.bide_damage));
+		if(target.status.getBideTurnsLeft() > 0) {
+			target.status.setBideDamage(target.status.getBideDamage() + damage);
+			BattleEvents.emit(BattleEvents.Type.BIDE_STORED, target.species, target.status.getBideDamage());
 		}
 			
 		
@@ -211,7 +238,7 @@ public class Move {
 		target.lastAttacker = user.species;
 		
 		// Apply any secondary effects of the current move.
-		this.secondaryEffect.accept(new MoveDamage(user, target, damage));
+		this.secondaryEffect.apply(user, target, damage);
 		
 	}
 	
@@ -226,10 +253,10 @@ public class Move {
 		if(this.power == 0)
 			return 0;
 		
-		boolean critical = (Math.random() < Pokedex.getDex().get(user.species).baseStats[4]/(!highCritRatio ? 512.0 : 64.0));
+		boolean critical = (BattleRandom.nextDouble() < user.speciesData.getBaseStat(4)/(!highCritRatio ? 512.0 : 64.0));
 		
 		if(critical) {
-			Simulator.addMessage("Critical hit!");
+			BattleEvents.emit(BattleEvents.Type.CRIT, user.species);
 		}
 		
 		int level = user.level * (critical ? 2 : 1);
@@ -248,22 +275,20 @@ public class Move {
 		int baseDamage = (((((((2 * level)/5) + 2) * power * attackingStat)/(defendingStat))/50) + 2);
 		
 		// Random damage range
-		double modifier = ((Math.random() * 39) + 217)/(255);
+		double modifier = ((BattleRandom.nextDouble() * 39) + 217)/(255);
 		// STAB
 		for(Type t : user.types)
 			if(t == this.type)
 				modifier *= 1.5;
 		// Type effectiveness
-		for(Type t : target.types) {
-			double typeModifier = this.type.effectiveness(t);
-			if(typeModifier == 0)
-				Simulator.addMessage("It didn't affect " + target.species);
-			else if(typeModifier > 1)
-				Simulator.addMessage("It's super effective!");
-			else if(typeModifier < 1)
-				Simulator.addMessage("It's not very effective");
-			modifier *= typeModifier;
-		}
+		double typeModifier = this.type.effectiveness(target.types[0], target.types[1]);
+		if(typeModifier == 0)
+			BattleEvents.emit(BattleEvents.Type.NO_EFFECT, target.species);
+		else if(typeModifier > 1)
+			BattleEvents.emit(BattleEvents.Type.SUPER_EFFECTIVE, target.species);
+		else if(typeModifier < 1)
+			BattleEvents.emit(BattleEvents.Type.NOT_VERY_EFFECTIVE, target.species);
+		modifier *= typeModifier;
 		
 		return (int)(baseDamage * modifier);
 	}
@@ -275,1413 +300,181 @@ public class Move {
 		return moves.get(moveName);
 	}
 	
+	/** Returns the move with id [id] */
+	public static Move getMove(int id) {
+		if(moves == null) {
+			loadMoves();
+		}
+		return movesById[id];
+	}
+	
+	/** Returns the number of moves, which is one more than the largest move id */
+	public static int moveCount() {
+		if(moves == null) {
+			loadMoves();
+		}
+		return movesById.length;
+	}
+	
+	/**
+	 * Loads the moves from moves.csv. Each line describes one move:
+	 * name,type,power,accuracy,pp,priority,highCritRatio,kind,effect,health_decrease,stat_boost,status_chance
+	 * where an accuracy of -1 means the move doesn't check for accuracy, a pp of - means 
+	 * unlimited pp, and effect is one of the effects described in effect()
+	 */
 	private static void loadMoves() {
-		
 		moves = new HashMap<String, Move>();
-		Move m = new Move();
-		
-		
-		// Agility
-		m = new Move();
-		m.name = "agility";
-		m.maxPP = 48;
-		m.power = 0;
-		m.accuracy = -1;
-		m.type = Type.PSYCHIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			md.user.statMod(Pokemon.Stat.SPE, 2);
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 1.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "twineedle";
-		m.power = 50;
-		m.maxPP = 32;
-		m.accuracy = 100;
-		m.type = Type.BUG;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (Math.random() < 0.2) {
-					md.target.setStatusCondition(Pokemon.StatusCondition.POISON, 0);
-				}
+		// Moves with the same effect share its handler
+		Map<String, Effect> effects = new HashMap<>();
+		
+		try (BufferedReader br = new BufferedReader(new FileReader("moves.csv"))) {
+			// Skip the header
+			String line = br.readLine();
+			while ((line = br.readLine()) != null) {
+				if (line.isEmpty())
+					continue;
+				String[] fields = line.split(",");
+				Move m = new Move();
+				m.name = fields[0];
+				m.type = Type.valueOf(fields[1]);
+				m.power = Integer.parseInt(fields[2]);
+				m.accuracy = Integer.parseInt(fields[3]);
+				m.maxPP = fields[4].equals("-") ? Integer.MAX_VALUE : Integer.parseInt(fields[4]);
+				m.priority = Integer.parseInt(fields[5]);
+				m.highCritRatio = Boolean.parseBoolean(fields[6]);
+				m.kind = Kind.valueOf(fields[7]);
+				m.secondaryEffect = effects.computeIfAbsent(fields[8], Move::effect);
+				m.health_decrease = Double.parseDouble(fields[9]);
+				m.stat_boost = Double.parseDouble(fields[10]);
+				m.status_chance = Double.parseDouble(fields[11]);
+				moves.put(m.name, m);
 			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 1.0 * 0.2;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "triattack";
-		m.power = 80;
-		m.maxPP = 16;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "transform";
-		m.power = 0;
-		m.maxPP = 16;
-		m.accuracy = -1;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.user.transformTo(md.target);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		// Amnesia
-		m = new Move();
-		m.name = "amnesia";
-		m.maxPP = 32;
-		m.power = 0;
-		m.accuracy = -1;
-		m.type = Type.PSYCHIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			md.user.statMod(Pokemon.Stat.SPC, 2);
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 2.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		// Barrier
-		m = new Move();
-		m.name = "barrier";
-		m.maxPP = 32;
-		m.power = 0;
-		m.accuracy = -1;
-		m.type = Type.PSYCHIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			md.user.statMod(Pokemon.Stat.DEF, 2);
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 2.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		// Bide
-		m = new Move();
-		m.name = "bide";
-		m.maxPP = 16;
-		m.power = 0;
-		m.accuracy = -1;
-		m.type = Type.NONE;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		// Blizzard
-		m = new Move();
-		m.name = "blizzard";
-		m.maxPP = 8;
-		m.power = 120;
-		m.accuracy = 90;
-		m.type = Type.ICE;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			if(Math.random() < 0.1)
-				md.target.setStatusCondition(Pokemon.StatusCondition.FREEZE, 0);
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 4.0 * 0.1;
-		moves.put(m.name, m);
-		
-		// Body Slam
-		m = new Move();
-		m.name = "bodyslam";
-		m.maxPP = 24;
-		m.power = 85;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			if(Math.random() < 0.3)
-				md.target.setStatusCondition(Pokemon.StatusCondition.PARALYZE, 0);
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 2.0 * 0.3;
-		moves.put(m.name, m);
-		
-		// BubbleBeam
-		m = new Move();
-		m.name = "bubblebeam";
-		m.maxPP = 32;
-		m.power = 65;
-		m.accuracy = 100;
-		m.type = Type.WATER;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			if(Math.random() < 0.33)
-				md.target.statMod(Pokemon.Stat.SPE, -1);
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.16;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		
-//		Confuse Ray
-		m = new Move();
-		m.name = "confuseray";
-		m.maxPP = 16;
-		m.power = 0;
-		m.accuracy = 100;
-		m.type = Type.GHOST;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			md.target.setStatusCondition(Pokemon.StatusCondition.CONFUSE, (int)(Math.random() * 4 + 1));
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 1.5;
-		moves.put(m.name, m);
-		
-// 		Counter
-		m = new Move();
-		m.name = "counter";
-		m.maxPP = 32;
-		m.power = 0;
-		m.accuracy = 100;
-		m.type = Type.FIGHTING;
-		m.highCritRatio = false;
-		m.priority = -1;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		
-//		Crabhammer
-		m = new Move();
-		m.name = "crabhammer";
-		m.maxPP = 16;
-		m.power = 90;
-		m.accuracy = 85;
-		m.type = Type.WATER;
-		m.highCritRatio = true;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Could not load moves.csv: " + e.getMessage());
+		}
 		
-//		Double Kick
-		m = new Move();
-		m.name = "doublekick";
-		m.maxPP = 48;
-		m.power = 60;
-		m.accuracy = 100;
-		m.type = Type.FIGHTING;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
+		// Assign ids in order of name so that they don't depend on the order moves are added in
+		ArrayList<String> moveNames = new ArrayList<>(moves.keySet());
+		Collections.sort(moveNames);
+		movesById = new Move[moveNames.size()];
+		for(int i = 0; i < movesById.length; i++) {
+			movesById[i] = moves.get(moveNames.get(i));
+			movesById[i].id = i;
+		}
+	}
 	
+	/** Effect which does nothing */
+	private static final Effect NO_EFFECT = (user, target, damage) -> {};
 	
-//		Double-Edge
-		m = new Move();
-		m.name = "doubleedge";
-		m.maxPP = 24;
-		m.power = 100;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			md.user.currHp = Math.max(md.user.currHp - md.damage/4, 0);
-		}};
-		m.health_decrease = 0.25;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-//		Dragon Rage
-		m = new Move();
-		m.name = "dragonrage";
-		m.maxPP = 16;
-		m.power = 40;
-		m.accuracy = 100;
-		m.type = Type.DRAGON;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-//		Drill Peck
-		m = new Move();
-		m.name = "drillpeck";
-		m.maxPP = 32;
-		m.power = 80;
-		m.accuracy = 100;
-		m.type = Type.FLYING;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-//		Earthquake
-		m = new Move();
-		m.name = "earthquake";
-		m.maxPP = 16;
-		m.power = 100;
-		m.accuracy = 100;
-		m.type = Type.GROUND;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-//		Egg Bomb
-		m = new Move();
-		m.name = "eggbomb";
-		m.maxPP = 16;
-		m.power = 100;
-		m.accuracy = 75;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		
-//		Explosion
-		m = new Move();
-		m.name = "explosion";
-		m.maxPP = 8;
-		m.power = 340;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			md.user.currHp = 0;
-		}};
-		m.health_decrease = 1.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-//		Fire Blast
-		m = new Move();
-		m.name = "fireblast";
-		m.maxPP = 8;
-		m.power = 120;
-		m.accuracy = 85;
-		m.type = Type.FIRE;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			if(Math.random() < 0.3)
-				md.target.setStatusCondition(Pokemon.StatusCondition.BURN, (int)(Math.random() * 4 + 1));
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 1.0 * 0.3;
-		moves.put(m.name, m);
-		
-//		Flamethrower
-		m = new Move();
-		m.name = "flamethrower";
-		m.maxPP = 24;
-		m.power = 95;
-		m.accuracy = 100;
-		m.type = Type.FIRE;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			if(Math.random() < 0.1)
-				md.target.setStatusCondition(Pokemon.StatusCondition.BURN, (int)(Math.random() * 4 + 1));
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 1.0 * 0.1;
-		moves.put(m.name, m);
-		
-		
-//		Glare
-		m = new Move();
-		m.name = "glare";
-		m.maxPP = 48;
-		m.power = 0;
-		m.accuracy = 75;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			md.target.setStatusCondition(Pokemon.StatusCondition.PARALYZE, (int)(Math.random() * 4 + 1));
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 2.0;
-		moves.put(m.name, m);
-		
-//		Growth
-		m = new Move();
-		m.name = "growth";
-		m.maxPP = 64;
-		m.power = 0;
-		m.accuracy = -1;
-		m.type = Type.NORMAL;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			md.user.statMod(Pokemon.Stat.SPC, 1);
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 1.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-//		Harden
-		m = new Move();
-		m.name = "harden";
-		m.maxPP = 48;
-		m.power = 0;
-		m.accuracy = -1;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			md.user.statMod(Pokemon.Stat.DEF, 1);
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 1.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-//		High Jump Kick
-		m = new Move();
-		m.name = "highjumpkick";
-		m.maxPP = 32;
-		m.power = 85;
-		m.accuracy = 90;
-		m.type = Type.FIGHTING;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {public void accept(MoveDamage md) {
-			if(md.damage == 0)
-				md.user.currHp -= 1;
-		}};
-		m.health_decrease = 0.01;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-
-					
-		m = new Move();
-		m.name = "toxic";
-		m.power = 0;
-		m.maxPP = 16;
-		m.accuracy = 90;
-		m.type = Type.POISON;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.setStatusCondition(Pokemon.StatusCondition.BADLY_POISON, 0);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 1.5;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "thunderbolt";
-		m.power = 95;
-		m.maxPP = 24;
-		m.accuracy = 100;
-		m.type = Type.ELECTRIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (Math.random() < 0.1) {
-					md.target.setStatusCondition(Pokemon.StatusCondition.PARALYZE, 0);
-				}
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 2.0 * 0.1;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "thunderwave";
-		m.power = 0;
-		m.maxPP = 32;
-		m.accuracy = 100;
-		m.type = Type.ELECTRIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.setStatusCondition(Pokemon.StatusCondition.PARALYZE, 0);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 2.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "thunder";
-		m.power = 110;
-		m.maxPP = 16;
-		m.accuracy = 70;
-		m.type = Type.ELECTRIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (Math.random() < 0.1) {
-					md.target.setStatusCondition(Pokemon.StatusCondition.PARALYZE, 0);
-				}
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 2.0 * 0.1;
-		moves.put(m.name, m);
-		
-		
-		m = new Move();
-		m.name = "tailwhip";
-		m.power = 0;
-		m.maxPP = 48;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (md.target.status.statMod[2] != -3) {
-					md.target.status.statMod[2]--;
-				}
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 1.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "tackle";
-		m.power = 35;
-		m.maxPP = 56;
-		m.accuracy = 95;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "swordsdance";
-		m.power = 0;
-		m.maxPP = 48;
-		m.accuracy = -1;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.user.statMod(Pokemon.Stat.ATK, 2);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 2.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "surf";
-		m.power = 95;
-		m.maxPP = 24;
-		m.accuracy = 100;
-		m.type = Type.WATER;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return; 
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "superfang";
-		m.power = 0;
-		m.maxPP = 16;
-		m.accuracy = 90;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return; 
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "substitute";
-		m.power = 0;
-		m.maxPP = 16;
-		m.accuracy = -1;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (md.user.currHp > md.user.maxHp/4 && md.user.status.substitute_hp <= 0) {
-					md.user.status.substitute_hp = md.user.maxHp/4;
-					md.user.currHp -= md.user.maxHp/4;
-					Simulator.addMessage(md.user.species + "made a substitute (" + md.user.status.substitute_hp + ")");
-				}
-			}
-		};
-		m.health_decrease = 0.25;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "submission";
-		m.power = 80;
-		m.maxPP = 40;
-		m.accuracy = 80;
-		m.type = Type.FIGHTING;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.user.currHp -= md.damage/4;
-			}
-		};
-		m.health_decrease = 0.25;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "stunspore";
-		m.power = 0;
-		m.maxPP = 48;
-		m.accuracy = 75;
-		m.type = Type.GRASS;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.setStatusCondition(Pokemon.StatusCondition.PARALYZE, 0);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 2.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "stringshot";
-		m.power = 0;
-		m.maxPP = 64;
-		m.accuracy = 95;
-		m.type = Type.BUG;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.statMod(Pokemon.Stat.SPE, -1);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.5;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "spore";
-		m.power = 0;
-		m.maxPP = 21;
-		m.accuracy = 100;
-		m.type = Type.GRASS;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.setStatusCondition(Pokemon.StatusCondition.SLEEP, (int)(Math.random() * 7));
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 3.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "softboiled";
-		m.power = 0;
-		m.maxPP = 16;
-		m.accuracy = -1;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.user.currHp = Integer.min(md.user.maxHp, md.user.currHp + md.user.maxHp/2);
-			}
-		};
-		m.health_decrease = -0.5;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "smokescreen";
-		m.power = 0;
-		m.maxPP = 32;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.statMod(Pokemon.Stat.ACC, -1);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.5;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "sludge";
-		m.power = 65;
-		m.maxPP = 32;
-		m.accuracy = 100;
-		m.type = Type.POISON;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (Math.random() < 0.4) {
-					md.target.setStatusCondition(Pokemon.StatusCondition.POISON, 0);
-				}
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 1.0 * 0.4;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "sleeppowder";
-		m.power = 0;
-		m.maxPP = 21;
-		m.accuracy = 75;
-		m.type = Type.GRASS;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.setStatusCondition(Pokemon.StatusCondition.SLEEP, (int)(Math.random() * 7));
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 3.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "slash";
-		m.power = 70;
-		m.maxPP = 32;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = true;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "skyattack";
-		m.power = 140;
-		m.maxPP = 8;
-		m.accuracy = 90;
-		m.type = Type.FLYING;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "sing";
-		m.power = 0;
-		m.maxPP = 21;
-		m.accuracy = 55;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.setStatusCondition(Pokemon.StatusCondition.SLEEP, (int)(Math.random() * 7));
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 3.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "selfdestruct";
-		m.power = 260;
-		m.maxPP = 8;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.user.currHp = 0;
-			}
-		};
-		m.health_decrease = 1.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "seismictoss";
-		m.power = 80;
-		m.maxPP = 32;
-		m.accuracy = 100;
-		m.type = Type.FIGHTING;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "screech";
-		m.power = 0;
-		m.maxPP = 64;
-		m.accuracy = 85;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.statMod(Pokemon.Stat.DEF, -2);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 2.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		
-		m = new Move(); 
-		m.name = "sandattack";
-		m.power = 0;
-		m.maxPP = 21;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.statMod(Pokemon.Stat.ACC, -1);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.5;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "rockslide";
-		m.power = 75;
-		m.maxPP = 16;
-		m.accuracy = 90;
-		m.type = Type.ROCK;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "rest";
-		m.power = 0;
-		m.maxPP = 16;
-		m.accuracy = -1;
-		m.type = Type.PSYCHIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if(md.user.currHp != md.user.maxHp) {
-					// Clear existing statuses
-					md.user.status.poison = false;
-					md.user.status.freeze = false;
-					md.user.status.paralyze = false;
-					md.user.status.burn = false;
-					md.user.status.badly_poisoned_counter = 0;
-					
-					md.user.currHp = md.user.maxHp;
-					md.user.setStatusCondition(Pokemon.StatusCondition.SLEEP, 2);
-				}
-			}
-		};
-		m.health_decrease = -1.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "reflect";
-		m.power = 0;
-		m.maxPP = 20;
-		m.accuracy = -1;
-		m.type = Type.PSYCHIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.user.statMod(Pokemon.Stat.DEF, 2);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 2.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "recover";
-		m.power = 0;
-		m.maxPP = 32;
-		m.accuracy = -1;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.user.currHp = Integer.min(md.user.maxHp, md.user.currHp + md.user.maxHp/2);
-			}
-		};
-		m.health_decrease = -0.5;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "razorleaf";
-		m.power = 55;
-		m.maxPP = 40;
-		m.accuracy = 95;
-		m.type = Type.GRASS;
-		m.highCritRatio = true;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "quickattack";
-		m.power = 40;
-		m.maxPP = 48;
-		m.accuracy = 95;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 1;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "psywave";
-		m.power = 0;
-		m.maxPP = 21;
-		m.accuracy = 80;
-		m.type = Type.PSYCHIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "psychic";
-		m.power = 90;
-		m.maxPP = 16;
-		m.accuracy = 100;
-		m.type = Type.PSYCHIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (3.0 * Math.random() < 1) {
-					md.target.statMod(Pokemon.Stat.SPC, -1);
-				}
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.33;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "poisonsting";
-		m.power = 15;
-		m.maxPP = 56;
-		m.accuracy = 100;
-		m.type = Type.POISON;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (Math.random() < 0.2) {
-					md.target.setStatusCondition(Pokemon.StatusCondition.POISON, 0);
-				}
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 1.0 * 0.2;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "pinmissile";
-		m.power = 14;
-		m.maxPP = 32;
-		m.accuracy = 85;
-		m.type = Type.BUG;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "nightshade";
-		m.power = 80;
-		m.maxPP = 21;
-		m.accuracy = 100;
-		m.type = Type.GHOST;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "mirrormove";
-		m.power = 0;
-		m.maxPP = 32;
-		m.accuracy = -1;
-		m.type = Type.FLYING;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "mimic";
-		m.power = 0;
-		m.maxPP = 16;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				for(int i = 0; i < md.user.moves.length; i++) {
-					if(md.user.moves[i].name.equals("mimic")) {
-						md.user.status.mimicIndex = i;
-						md.user.status.mimicPP = md.user.pp[i];
-						md.user.moves[i] = md.target.moves[(int)(Math.random() * 4)];
-						if(md.user.moves[i] != null) {
-							md.user.pp[i] = md.user.moves[i].maxPP;
+	/**
+	 * Returns the handler of the effect described by [spec], which is one of
+	 * - none
+	 * - boost STAT n: raises the user's STAT by n stages
+	 * - drop STAT n [chance]: lowers the target's STAT by n stages, with probability chance (default 1)
+	 * - status CONDITION [chance]: gives the target CONDITION, with probability chance (default 1)
+	 * - recoil n: the user loses 1/n of the damage dealt
+	 * - drain: the user recovers half of the damage dealt
+	 * - heal: the user recovers half of its max hp
+	 * - faint: the user faints
+	 * - crash: the user loses 1 hp if no damage was dealt
+	 * - recharge: the user must recharge next turn if the target didn't faint
+	 * - rest, substitute, transform, mimic: the effect of the move of the same name
+	 */
+	private static Effect effect(String spec) {
+		String[] args = spec.split(" ");
+		switch (args[0]) {
+			case "none":
+				return NO_EFFECT;
+			case "boost": {
+				Pokemon.Stat stat = Pokemon.Stat.valueOf(args[1]);
+				int stages = Integer.parseInt(args[2]);
+				return (user, target, damage) -> user.statMod(stat, stages);
+			}
+			case "drop": {
+				Pokemon.Stat stat = Pokemon.Stat.valueOf(args[1]);
+				int stages = Integer.parseInt(args[2]);
+				double chance = args.length > 3 ? Double.parseDouble(args[3]) : 1;
+				return (user, target, damage) -> {
+					if (chance >= 1 || BattleRandom.nextDouble() < chance)
+						target.statMod(stat, -stages);
+				};
+			}
+			case "status": {
+				Pokemon.StatusCondition condition = Pokemon.StatusCondition.valueOf(args[1]);
+				double chance = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+				return (user, target, damage) -> {
+					if (chance >= 1 || BattleRandom.nextDouble() < chance) {
+						// Only sleep and confusion last a number of turns
+						int turns = 0;
+						if (condition == Pokemon.StatusCondition.SLEEP)
+							turns = BattleRandom.nextInt(7);
+						else if (condition == Pokemon.StatusCondition.CONFUSE)
+							turns = BattleRandom.nextInt(4) + 1;
+						target.setStatusCondition(condition, turns);
+					}
+				};
+			}
+			case "recoil": {
+				int fraction = Integer.parseInt(args[1]);
+				return (user, target, damage) -> user.currHp = Math.max(user.currHp - damage/fraction, 0);
+			}
+			case "drain":
+				return (user, target, damage) -> user.currHp = Integer.min(user.maxHp, user.currHp + damage/2);
+			case "heal":
+				return (user, target, damage) -> user.currHp = Integer.min(user.maxHp, user.currHp + user.maxHp/2);
+			case "faint":
+				return (user, target, damage) -> user.currHp = 0;
+			case "crash":
+				return (user, target, damage) -> {
+					if(damage == 0)
+						user.currHp -= 1;
+				};
+			case "recharge":
+				return (user, target, damage) -> {
+					if (target.currHp > 0)
+						user.status.setRecharge(true);
+				};
+			case "rest":
+				return (user, target, damage) -> {
+					if(user.currHp != user.maxHp) {
+						// Clear existing statuses
+						user.status.setPoison(false);
+						user.status.setFreeze(false);
+						user.status.setParalyze(false);
+						user.status.setBurn(false);
+						user.status.setBadlyPoisonedCounter(0);
+						
+						user.currHp = user.maxHp;
+						user.setStatusCondition(Pokemon.StatusCondition.SLEEP, 2);
+					}
+				};
+			case "substitute":
+				return (user, target, damage) -> {
+					if (user.currHp > user.maxHp/4 && user.status.getSubstituteHp() <= 0) {
+						user.status.setSubstituteHp(user.maxHp/4);
+						user.currHp -= user.maxHp/4;
+						BattleEvents.emit(BattleEvents.Type.SUBSTITUTE, user.species, user.status.getSubstituteHp());
+					}
+				};
+			case "transform":
+				return (user, target, damage) -> user.transformTo(target);
+			case "mimic":
+				return (user, target, damage) -> {
+					for(int i = 0; i < user.moves.length; i++) {
+						if(user.moves[i] != null && user.moves[i].name.equals("mimic")) {
+							user.status.setMimicIndex(i);
+							user.status.setMimicPP(user.pp[i]);
+							user.moves[i] = target.moves[BattleRandom.nextInt(4)];
+							if(user.moves[i] != null) {
+								user.pp[i] = user.moves[i].maxPP;
+							}
 						}
 					}
-				}
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		
-		m = new Move(); 
-		m.name = "megakick";
-		m.power = 120;
-		m.maxPP = 8;
-		m.accuracy = 75;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "megadrain";
-		m.power = 40;
-		m.maxPP = 16;
-		m.accuracy = 100;
-		m.type = Type.GRASS;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.user.currHp = Integer.min(md.user.maxHp, md.user.currHp + md.damage/2);
-			}
-		};
-		m.health_decrease = -0.5;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "meditate";
-		m.power = 0;
-		m.maxPP = 64;
-		m.accuracy = -1;
-		m.type = Type.PSYCHIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.user.statMod(Pokemon.Stat.ATK, 1);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 1.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "lovelykiss";
-		m.power = 0;
-		m.maxPP = 16;
-		m.accuracy = 75;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.setStatusCondition(Pokemon.StatusCondition.SLEEP, (int)(Math.random() * 7));
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 3.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "leer";
-		m.power = 0;
-		m.maxPP = 48;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.statMod(Pokemon.Stat.DEF, -1);
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 1.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "icebeam";
-		m.power = 95;
-		m.maxPP = 16;
-		m.accuracy = 100;
-		m.type = Type.ICE;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (Math.random() < 0.1 ) {
-					md.target.setStatusCondition(Pokemon.StatusCondition.FREEZE, 0);
-				}
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 4.0 * 0.1;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "hypnosis";
-		m.power = 0;
-		m.maxPP = 32;
-		m.accuracy = 60;
-		m.type = Type.PSYCHIC;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				md.target.setStatusCondition(Pokemon.StatusCondition.SLEEP, (int)(Math.random() * 7));
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 3.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "hyperbeam";
-		m.power = 150;
-		m.maxPP = 8;
-		m.accuracy = 90;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				if (md.target.currHp > 0) {
-					md.user.status.recharge = true;
-				}
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move(); 
-		m.name = "hydropump";
-		m.power = 120;
-		m.maxPP = 8;
-		m.accuracy = 90;
-		m.type = Type.WATER;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "CONFUSED";
-		m.power = 40;
-		m.maxPP = Integer.MAX_VALUE;
-		m.accuracy = -1;
-		m.type = Type.NONE;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() {
-			public void accept(MoveDamage md) {
-				return;
-			}
-		};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "RECHARGE";
-		m.power = 0;
-		m.maxPP = Integer.MAX_VALUE;
-		m.accuracy = -1;
-		m.type = Type.NONE;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() { public void accept(MoveDamage md) {
-			md.user.status.recharge = false;
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "STRUGGLE";
-		m.power = 50;
-		m.maxPP = Integer.MAX_VALUE;
-		m.accuracy = 100;
-		m.type = Type.NORMAL;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() { public void accept(MoveDamage md) {
-			md.user.currHp -= md.damage/2;
-		}};
-		m.health_decrease = 0.5;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
-		
-		m = new Move();
-		m.name = "NOTHING";
-		m.power = 0;
-		m.maxPP = Integer.MAX_VALUE;
-		m.accuracy = 0;
-		m.type = Type.NONE;
-		m.highCritRatio = false;
-		m.priority = 0;
-		m.secondaryEffect = new Consumer<MoveDamage>() { public void accept(MoveDamage md) {
-
-		}};
-		m.health_decrease = 0.0;
-		m.stat_boost = 0.0;
-		m.status_chance = 0.0;
-		moves.put(m.name, m);
+				};
+			default:
+				throw new RuntimeException("Unknown move effect: " + spec);
+		}
 	}
 	
 	public static boolean isFiller(Move m) {
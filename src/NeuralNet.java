@@ -1,10 +1,12 @@
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
 import java.util.List;
 import java.util.StringTokenizer;
-import java.util.Map;
-import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import java.io.IOException;
 import java.io.FileReader;
@@ -12,23 +14,9 @@ import java.io.BufferedReader;
 import java.io.PrintWriter;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
-import java.io.File;
 
 public class NeuralNet {
 
-	/** Single unit within the multi-layered neural network. */
-	public static class Neuron {
-		public List<Neuron> inputs;
-		public List<Double> weights;
-		public double value;
-
-		public Neuron() {
-			inputs = new ArrayList<>();
-			weights = new ArrayList<>();
-			value = 0;
-		}
-	}
-
 	/** Data point. */
 	public static class Data {
 		public List<Double> x;
@@ -54,7 +42,7 @@ public class NeuralNet {
 		}
 	}
 
-	/** 
+	/**
 	 * Structure of the neural network. SIZE specifies the number of inputs;
 	 * LAYERS the number of layers excluding the output layer, and OUTPUT the
 	 * number of outputs.
@@ -68,11 +56,41 @@ public class NeuralNet {
 
 	// What each node in input corresponds to: https://i.imgur.com/ym1ra0S.jpg
 
-	/** 
-	 * Multi-layered neural network. Each index in the list corresponds to a
-	 * single layer of neurons.
+	/*
+	 * Multi-layered neural network. Layer 0 is the input layer, layers 1 to LAYERS - 1
+	 * are hidden layers (all of them have SIZE neurons), and layer LAYERS is the output
+	 * layer. Every neuron of layer i is connected to every neuron of layer i - 1.
+	 *
+	 * weights[i] is the weight matrix of layer i (for i >= 1) in row-major order:
+	 * weights[i][j*width(i-1) + k] is the weight of the connection from neuron k of
+	 * layer i - 1 to neuron j of layer i. weights[0] is empty.
+	 *
+	 * values[i][j] is the value of neuron j of layer i after the last forward
+	 * propagation, and sums[i][j] is its weighted sum of inputs before activation.
+	 * These buffers are reused by every forward propagation.
 	 */
-	public List<Neuron[]> nn;
+	private double[][] weights;
+	private double[][] values;
+	private double[][] sums;
+
+	/** Allocates the weights and buffers for the structure given by SIZE, LAYERS and OUTPUT */
+	private void allocate() {
+		weights = new double[LAYERS + 1][];
+		values = new double[LAYERS + 1][];
+		sums = new double[LAYERS + 1][];
+		for (int i = 0; i <= LAYERS; i++) {
+			values[i] = new double[width(i)];
+			sums[i] = new double[width(i)];
+			weights[i] = new double[i == 0 ? 0 : width(i) * width(i - 1)];
+		}
+		reducedValues = new_reduced_values();
+		quantizedInput = new byte[SIZE];
+	}
+
+	/** Returns the number of neurons in layer i */
+	private int width(int i) {
+		return (i < LAYERS ? SIZE : OUTPUT);
+	}
 
 	/** Constructs a neural network based on info from file "s". */
 	public NeuralNet(String s) {
@@ -88,30 +106,19 @@ public class NeuralNet {
 			EPOCHS = Integer.parseInt(st.nextToken());
 			ALPHA = Double.parseDouble(st.nextToken());
 
-			// Read in the weights of the neural network
-			nn = new ArrayList<>();
 			// Initialize the structure of the network
-			for (int i = 0; i < LAYERS; i++) {
-				nn.add(new Neuron[SIZE]);	
-			}
-			nn.add(new Neuron[OUTPUT]);
+			allocate();
 
-			// Initialize first layer of neurons
-			for (int i = 0; i < nn.get(0).length; i++) {
-				nn.get(0)[i] = new Neuron();
-			}
-			// Initialize connectedness of network and all weights to random values
-			for (int i = 1; i < nn.size(); i++) {
-				for (int j = 0; j < nn.get(i).length; j++) {
+			// Read in the weights of the neural network, one line per neuron
+			for (int i = 1; i <= LAYERS; i++) {
+				int inputs = width(i - 1);
+				for (int j = 0; j < width(i); j++) {
 					st = new StringTokenizer(br.readLine());
-					nn.get(i)[j] = new Neuron();
-
-					for (Neuron input : nn.get(i - 1)) {
-						nn.get(i)[j].inputs.add(input);
-						nn.get(i)[j].weights.add(Double.parseDouble(st.nextToken()));
+					for (int k = 0; k < inputs; k++) {
+						weights[i][j*inputs + k] = Double.parseDouble(st.nextToken());
 					}
 				}
-			}	
+			}
 
 			// Close the file
 			br.close();
@@ -121,10 +128,35 @@ public class NeuralNet {
 		}
 	}
 
+	/**
+	 * Constructs a copy of [other] with the same structure and weights. The copy
+	 * has its own buffers, so it can be forward propagated independently of
+	 * [other] (e.g. on a different thread). The reduced precision weights (see
+	 * set_precision) are shared, since they are never modified.
+	 */
+	public NeuralNet(NeuralNet other) {
+		SIZE = other.SIZE; LAYERS = other.LAYERS; OUTPUT = other.OUTPUT; EPOCHS = other.EPOCHS; ALPHA = other.ALPHA;
+		kernel = other.kernel;
+		trainingThreads = other.trainingThreads;
+
+		allocate();
+		for (int i = 1; i <= LAYERS; i++) {
+			System.arraycopy(other.weights[i], 0, weights[i], 0, weights[i].length);
+		}
+
+		precision = other.precision;
+		floatWeights = other.floatWeights;
+		quantizedWeights = other.quantizedWeights;
+		rowScales = other.rowScales;
+		rowOffsets = other.rowOffsets;
+		inputScales = other.inputScales;
+		inputOffsets = other.inputOffsets;
+		inverseInputScales = other.inverseInputScales;
+	}
+
 	/** Saves the weights of the neural network to this file. */
 	public void save_to_file(String s) {
 		try {
-			File f = new File(s);
 			FileWriter fw = new FileWriter(s);
 			BufferedWriter bw = new BufferedWriter(fw);
 			PrintWriter pw = new PrintWriter(bw);
@@ -137,15 +169,16 @@ public class NeuralNet {
 			pw.print(ALPHA + " ");
 			pw.print("\n");
 
-			// Print the weights of the neural network
-			for (int i = 1; i < nn.size(); i++) {
-				for (int j = 0; j < nn.get(i).length; j++) {
-					for (int k = 0; k < nn.get(i)[j].weights.size(); k++) {
-						pw.print(nn.get(i)[j].weights.get(k) + " ");
+			// Print the weights of the neural network, one line per neuron
+			for (int i = 1; i <= LAYERS; i++) {
+				int inputs = width(i - 1);
+				for (int j = 0; j < width(i); j++) {
+					for (int k = 0; k < inputs; k++) {
+						pw.print(weights[i][j*inputs + k] + " ");
 					}
 					pw.print("\n");
 				}
-			}	
+			}
 			// Close the file
 			pw.close();
 
@@ -155,100 +188,600 @@ public class NeuralNet {
 		}
 	}
 
-	/** 
+	/**
 	 * Constructs a neural network object with SIZE = s, LAYERS = l, OUTPUT = o,
 	 * EPOCHS = e, and ALPHA = a. All neurons in layer i receive inputs from every
-	 * neuron in layer i - 1 (fully connected). All weights are initialized to a 
-	 * random value between 0 and 1.
+	 * neuron in layer i - 1 (fully connected). All weights are initialized to a
+	 * random value between 0 and 1, drawn from BattleRandom so that the network
+	 * is the same whenever the current thread's generator has the same seed.
 	 */
 	public NeuralNet(int s, int l, int o, int e, double a) {
 		// Initialize parameters of neural net
 		SIZE = s; LAYERS = l; OUTPUT = o; EPOCHS = e; ALPHA = a;
 
-		nn = new ArrayList<>();
-		// Initialize the structure of the network
-		for (int i = 0; i < LAYERS; i++) {
-			nn.add(new Neuron[SIZE]);	
+		// Initialize the structure of the network and all weights to random values
+		allocate();
+		for (int i = 1; i <= LAYERS; i++) {
+			for (int k = 0; k < weights[i].length; k++) {
+				weights[i][k] = BattleRandom.nextDouble();
+			}
 		}
-		nn.add(new Neuron[OUTPUT]);
+	}
+
+	/**
+	 * Forward propagation through the neural network. Used for training and
+	 * to calculate the neural network output given input x. Will modify the
+	 * values of each neuron in the network. The values of the neurons in the
+	 * output after execution are the outputs of input x (see output()). Throws
+	 * runtime exception if the dimensions of x are improper.
+	 */
+	public void forward_prop(List<Double> x) {
+		load(x);
+		propagate();
+	}
+
+	/** Inputs x into the neural network */
+	private void load(List<Double> x) {
+		if (x.size() != SIZE) {
+			throw new RuntimeException("Input invalid into neural network.");
+		}
+
+		for (int i = 0; i < x.size(); i++) {
+			values[0][i] = x.get(i);
+		}
+	}
+
+	/** Same as forward_prop(List<Double>), for an input which is already a primitive array */
+	public void forward_prop(double[] x) {
+		if (x.length != SIZE) {
+			throw new RuntimeException("Input invalid into neural network.");
+		}
+
+		System.arraycopy(x, 0, values[0], 0, SIZE);
+		propagate();
+	}
+
+	/**
+	 * Forward propagation of the features of [gs] (see input(GameState, double[])), which
+	 * are written straight into the input layer, so nothing is allocated.
+	 */
+	public void forward_prop(GameState gs) {
+		if (SIZE != INPUT_SIZE) {
+			throw new RuntimeException("Input invalid into neural network.");
+		}
+
+		input(gs, values[0]);
+		propagate();
+	}
 
-		// Initialize first layer of neurons
-		for (int i = 0; i < nn.get(0).length; i++) {
-			nn.get(0)[i] = new Neuron();
+	/**
+	 * Propagates the values of the input layer upwards with the precision of this network.
+	 * Only the DOUBLE precision sets the values of the hidden neurons.
+	 */
+	private void propagate() {
+		if (precision == Precision.DOUBLE)
+			propagate_double();
+		else
+			propagate_reduced(values[0], values[LAYERS], reducedValues, quantizedInput);
+	}
+
+	/** Propagates the values of the input layer upwards with the double weights */
+	private void propagate_double() {
+		for (int i = 1; i <= LAYERS; i++) {
+			double[] sum = sums[i];
+			double[] out = values[i];
+			multiply(weights[i], values[i - 1], sum, 0, out.length);
+			for (int j = 0; j < out.length; j++) {
+				// The output layer is not activated
+				out[j] = (i < LAYERS ? activate(sum[j]) : sum[j]);
+			}
 		}
-		// Initialize connectedness of network and all weights to random values
-		for (int i = 1; i < nn.size(); i++) {
-			for (int j = 0; j < nn.get(i).length; j++) {
-				nn.get(i)[j] = new Neuron();
+	}
+
+	/**
+	 * Implementations of the matrix-vector products of forward propagation. Both give
+	 * exactly the same values, since each neuron's sum is accumulated in the same order.
+	 */
+	public enum Kernel {
+		/** One neuron at a time */
+		SCALAR,
+		/**
+		 * BLOCK_ROWS neurons at a time, so each input value is loaded once per block, and
+		 * the sums of the block don't depend on each other (so the CPU can overlap them)
+		 */
+		BLOCKED
+	}
+
+	/** Kernel used by the forward propagations of this network, which can be changed at any time */
+	public Kernel kernel = Kernel.BLOCKED;
+
+	/** Number of neurons of a block of the BLOCKED kernel */
+	private static final int BLOCK_ROWS = 4;
 
-				for (Neuron input : nn.get(i - 1)) {
-					nn.get(i)[j].inputs.add(input);
-					nn.get(i)[j].weights.add(Math.random());
+	/**
+	 * Sets out[j] to the weighted sum of the values [in] for neuron j, for every j in
+	 * [from, to), where [w] is the weight matrix of the layer (see weights)
+	 */
+	private void multiply(double[] w, double[] in, double[] out, int from, int to) {
+		int inputs = in.length;
+		int j = from;
+		if (kernel == Kernel.BLOCKED) {
+			for (; j + BLOCK_ROWS <= to; j += BLOCK_ROWS) {
+				int r0 = j * inputs, r1 = r0 + inputs, r2 = r1 + inputs, r3 = r2 + inputs;
+				double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+				for (int k = 0; k < inputs; k++) {
+					double v = in[k];
+					s0 += w[r0 + k] * v;
+					s1 += w[r1 + k] * v;
+					s2 += w[r2 + k] * v;
+					s3 += w[r3 + k] * v;
 				}
+				out[j] = s0;
+				out[j + 1] = s1;
+				out[j + 2] = s2;
+				out[j + 3] = s3;
+			}
+		}
+		// The neurons left over from the blocks, or every neuron for the SCALAR kernel
+		for (; j < to; j++) {
+			double s = 0.0;
+			int row = j * inputs;
+			for (int k = 0; k < inputs; k++) {
+				s += w[row + k] * in[k];
 			}
-		}	
+			out[j] = s;
+		}
 	}
 
-	/** 
-	 * Calculates the dot product of x and y. Throws runtime exception if
-	 * the dimensions of x and y do not match.
+	/**
+	 * Returns the values of the output neurons after the last forward propagation.
+	 * The array is reused by the next forward propagation, so it must not be modified,
+	 * and should be copied if it is needed afterwards.
 	 */
-	private double dot(List<Double> x, List<Double> y) {
-		double ret = 0.0;
-		if (x.size() != y.size()) {
-			throw new RuntimeException("Dot product of different length arrays.");
+	public double[] output() {
+		return values[LAYERS];
+	}
+
+	/**
+	 * Forward propagation of every input in [xs] at once, one layer at a time,
+	 * so that each neuron's weights are only read once per batch. Returns the
+	 * output layer values for each input (ret[b][i] is the value of output
+	 * neuron i for input xs.get(b)).
+	 *
+	 * Unlike forward_prop, this does not modify the values of the neurons, so it
+	 * can be called by several threads at once. Throws runtime exception if the
+	 * dimensions of any input are improper.
+	 */
+	public double[][] forward_prop_batch(List<List<Double>> xs) {
+		double[][] values = new double[xs.size()][];
+		for (int b = 0; b < values.length; b++) {
+			List<Double> x = xs.get(b);
+			values[b] = new double[x.size()];
+			for (int i = 0; i < x.size(); i++) {
+				values[b][i] = x.get(i);
+			}
 		}
+		return forward_prop_batch(values);
+	}
 
-		for (int i = 0; i < x.size(); i++) {
-			ret += (x.get(i) * y.get(i));
+	/** Same as forward_prop_batch(List<List<Double>>), for inputs which are already primitive arrays */
+	public double[][] forward_prop_batch(double[][] xs) {
+		for (double[] x : xs) {
+			if (x.length != SIZE) {
+				throw new RuntimeException("Input invalid into neural network.");
+			}
 		}
 
-		return ret;
+		if (precision != Precision.DOUBLE) {
+			// Each call has its own buffers, since several threads may call this at once
+			float[][] buffers = new_reduced_values();
+			byte[] quantized = new byte[SIZE];
+			double[][] ret = new double[xs.length][OUTPUT];
+			for (int b = 0; b < xs.length; b++) {
+				propagate_reduced(xs[b], ret[b], buffers, quantized);
+			}
+			return ret;
+		}
+
+		double[][] values = xs;
+		for (int i = 1; i <= LAYERS; i++) {
+			int width = width(i);
+			double[][] next = new double[values.length][width];
+			// Go through the inputs for each block of neurons, so its weights stay in the cache
+			for (int j = 0; j < width; j += BLOCK_ROWS) {
+				for (int b = 0; b < values.length; b++) {
+					multiply(weights[i], values[b], next[b], j, Math.min(j + BLOCK_ROWS, width));
+				}
+			}
+			for (int b = 0; b < values.length; b++) {
+				for (int j = 0; j < width; j++) {
+					// The output layer is not activated (same as forward_prop)
+					next[b][j] = (i < LAYERS ? activate(next[b][j]) : next[b][j]);
+				}
+			}
+			values = next;
+		}
+
+		return values;
 	}
 
 	/**
-	 * Returns the corresponding values of every neuron which connects to n.
+	 * Precisions of the weights and arithmetic used by forward propagation. Training
+	 * always uses the double weights, which stay the weights saved by save_to_file.
 	 */
-	private List<Double> input_values(Neuron n) {
-		List<Double> ret = new ArrayList<>();
-		for (Neuron input : n.inputs) {
-			ret.add(input.value);
+	public enum Precision {
+		/** The weights as they are read from the file */
+		DOUBLE,
+		/** The weights rounded to floats, which halves the memory read per forward propagation */
+		FLOAT,
+		/**
+		 * The weights quantized to bytes, with a scale per neuron, and the values of each layer
+		 * quantized to bytes with a scale and offset per input neuron, which quarters the memory
+		 * read per forward propagation. The scales and offsets of the values are found by calibrate().
+		 */
+		INT8
+	}
+
+	/** Precision of the forward propagations of this network (see set_precision) */
+	private Precision precision = Precision.DOUBLE;
+
+	/*
+	 * Reduced precision copies of the weights, made by set_precision(). They are never modified
+	 * once made, so copies of this network share them.
+	 *
+	 * floatWeights[i] has the same layout as weights[i].
+	 *
+	 * For INT8, value k of layer i is quantized to the byte round((value - inputOffsets[i][k])
+	 * / inputScales[i][k]). The weights of layer i are multiplied by the scales of their input
+	 * values (so the bytes of the inputs can be multiplied with them directly), and then each
+	 * neuron's row of weights is scaled to fit in [-127, 127]: weights[i][j*width(i-1) + k] *
+	 * inputScales[i - 1][k] is about quantizedWeights[i][j*width(i-1) + k] * rowScales[i][j].
+	 * rowOffsets[i][j] is the part of the sum of neuron j due to the offsets of its inputs.
+	 */
+	private float[][] floatWeights;
+	private byte[][] quantizedWeights;
+	private float[][] rowScales, rowOffsets;
+	private double[][] inputScales;
+	private float[][] inputOffsets, inverseInputScales;
+
+	/** Buffers of the reduced precision forward propagations (values of each layer, and the bytes of the input values) */
+	private float[][] reducedValues;
+	private byte[] quantizedInput;
+
+	/** Returns a buffer with one float per neuron of each layer */
+	private float[][] new_reduced_values() {
+		float[][] v = new float[LAYERS + 1][];
+		for (int i = 0; i <= LAYERS; i++) {
+			v[i] = new float[width(i)];
 		}
+		return v;
+	}
 
-		return ret;
+	public Precision get_precision() {
+		return precision;
 	}
 
 	/**
-	 * Forward propagation through the neural network. Used for training and
-	 * to calculate the neural network output given input x. Will modify the
-	 * values of each neuron in the network. The values of the neurons in the
-	 * output after execution are the outputs of input x. Throws runtime
-	 * exception if the dimensions of x are improper.
+	 * Makes the forward propagations of this network use precision [p], making the reduced
+	 * precision weights from the current weights. Throws runtime exception if [p] is INT8
+	 * and this network has not been calibrated for it (see calibrate).
 	 */
-	public void forward_prop(List<Double> x) {
-		if (x.size() != nn.get(0).length) {
-			throw new RuntimeException("Input invalid into neural network.");
+	public void set_precision(Precision p) {
+		if (p == Precision.FLOAT) {
+			float[][] f = new float[LAYERS + 1][];
+			for (int i = 0; i <= LAYERS; i++) {
+				f[i] = new float[weights[i].length];
+				for (int n = 0; n < f[i].length; n++) {
+					f[i][n] = (float) weights[i][n];
+				}
+			}
+			floatWeights = f;
 		}
+		else if (p == Precision.INT8) {
+			if (inputScales == null) {
+				throw new RuntimeException("Neural network must be calibrated before using INT8 precision.");
+			}
+			byte[][] q = new byte[LAYERS + 1][];
+			float[][] scales = new float[LAYERS + 1][];
+			float[][] offsets = new float[LAYERS + 1][];
+			for (int i = 0; i <= LAYERS; i++) {
+				q[i] = new byte[weights[i].length];
+				scales[i] = new float[i == 0 ? 0 : width(i)];
+				offsets[i] = new float[i == 0 ? 0 : width(i)];
+			}
+			for (int i = 1; i <= LAYERS; i++) {
+				double[] in = inputScales[i - 1];
+				int inputs = in.length;
+				for (int j = 0; j < width(i); j++) {
+					int row = j * inputs;
+					double max = 0.0, offset = 0.0;
+					for (int k = 0; k < inputs; k++) {
+						max = Math.max(max, Math.abs(weights[i][row + k] * in[k]));
+						offset += weights[i][row + k] * inputOffsets[i - 1][k];
+					}
+					double scale = (max == 0.0 ? 1.0 : max / 127);
+					for (int k = 0; k < inputs; k++) {
+						q[i][row + k] = (byte) Math.round(weights[i][row + k] * in[k] / scale);
+					}
+					scales[i][j] = (float) scale;
+					offsets[i][j] = (float) offset;
+				}
+			}
+			quantizedWeights = q;
+			rowScales = scales;
+			rowOffsets = offsets;
+		}
+		precision = p;
+	}
 
-		// input x into the neural network
-		for (int i = 0; i < x.size(); i++) {
-			nn.get(0)[i].value = x.get(i);
+	/**
+	 * Remakes the reduced precision weights from the trained weights. The ranges of the values 
+	 * found by an INT8 calibration don't hold for the trained weights, so an INT8 network goes 
+	 * back to DOUBLE precision, and has to be calibrated again to use INT8.
+	 */
+	private void reset_reduced_precision() {
+		if (precision == Precision.INT8) {
+			inputScales = null;
+			inputOffsets = null;
+			inverseInputScales = null;
+			quantizedWeights = null;
+			rowScales = null;
+			rowOffsets = null;
+			precision = Precision.DOUBLE;
+		}
+		else {
+			set_precision(precision);
 		}
+	}
 
-		// propogate the input values upwards
-		for (int i = 1; i < nn.size() - 1; i++) {
-			for (Neuron unit : nn.get(i)) {
-				List<Double> feed = input_values(unit);
-				unit.value = activate(dot(unit.weights, feed));
+	/**
+	 * Forward propagation of the input [x] with the reduced precision of this network,
+	 * writing the output layer values to [out], and using [v] and [q] as buffers
+	 */
+	private void propagate_reduced(double[] x, double[] out, float[][] v, byte[] q) {
+		for (int k = 0; k < SIZE; k++) {
+			v[0][k] = (float) x[k];
+		}
+		for (int i = 1; i <= LAYERS; i++) {
+			if (precision == Precision.FLOAT)
+				multiply_float(floatWeights[i], v[i - 1], v[i]);
+			else
+				multiply_int8(i, v[i - 1], v[i], q);
+			if (i < LAYERS) {
+				for (int j = 0; j < v[i].length; j++) {
+					v[i][j] = activate_fast(v[i][j]);
+				}
 			}
 		}
+		for (int j = 0; j < OUTPUT; j++) {
+			out[j] = v[LAYERS][j];
+		}
+	}
 
-		for (Neuron unit : nn.get(LAYERS)) {
-			List<Double> feed = input_values(unit);
-			unit.value = dot(unit.weights, feed);
+	/** Same as multiply() for every neuron of a layer, with float weights and values */
+	private void multiply_float(float[] w, float[] in, float[] out) {
+		int inputs = in.length;
+		int j = 0;
+		for (; j + BLOCK_ROWS <= out.length; j += BLOCK_ROWS) {
+			int r0 = j * inputs, r1 = r0 + inputs, r2 = r1 + inputs, r3 = r2 + inputs;
+			float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+			for (int k = 0; k < inputs; k++) {
+				float v = in[k];
+				s0 += w[r0 + k] * v;
+				s1 += w[r1 + k] * v;
+				s2 += w[r2 + k] * v;
+				s3 += w[r3 + k] * v;
+			}
+			out[j] = s0;
+			out[j + 1] = s1;
+			out[j + 2] = s2;
+			out[j + 3] = s3;
+		}
+		for (; j < out.length; j++) {
+			float s = 0f;
+			int row = j * inputs;
+			for (int k = 0; k < inputs; k++) {
+				s += w[row + k] * in[k];
+			}
+			out[j] = s;
 		}
 	}
 
+	/**
+	 * Same as multiply() for every neuron of layer i, with the quantized weights. The values [in]
+	 * are quantized into [q] first (clamped to the range seen during calibration), so each sum
+	 * is accumulated exactly in an int, and only scaled back once.
+	 */
+	private void multiply_int8(int i, float[] in, float[] out, byte[] q) {
+		float[] inverse = inverseInputScales[i - 1];
+		float[] centers = inputOffsets[i - 1];
+		int inputs = in.length;
+		for (int k = 0; k < inputs; k++) {
+			q[k] = (byte) Math.max(-127, Math.min(127, Math.round((in[k] - centers[k]) * inverse[k])));
+		}
+		byte[] w = quantizedWeights[i];
+		float[] scales = rowScales[i];
+		float[] offsets = rowOffsets[i];
+		int j = 0;
+		for (; j + BLOCK_ROWS <= out.length; j += BLOCK_ROWS) {
+			int r0 = j * inputs, r1 = r0 + inputs, r2 = r1 + inputs, r3 = r2 + inputs;
+			int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			for (int k = 0; k < inputs; k++) {
+				int v = q[k];
+				s0 += w[r0 + k] * v;
+				s1 += w[r1 + k] * v;
+				s2 += w[r2 + k] * v;
+				s3 += w[r3 + k] * v;
+			}
+			out[j] = s0 * scales[j] + offsets[j];
+			out[j + 1] = s1 * scales[j + 1] + offsets[j + 1];
+			out[j + 2] = s2 * scales[j + 2] + offsets[j + 2];
+			out[j + 3] = s3 * scales[j + 3] + offsets[j + 3];
+		}
+		for (; j < out.length; j++) {
+			int s = 0;
+			int row = j * inputs;
+			for (int k = 0; k < inputs; k++) {
+				s += w[row + k] * q[k];
+			}
+			out[j] = s * scales[j] + offsets[j];
+		}
+	}
+
+	/**
+	 * How much the outputs of a reduced precision differ from the outputs of the double
+	 * weights, over [samples] inputs (see evaluate_precision)
+	 */
+	public static class Calibration {
+		public final Precision precision;
+		public final int samples;
+		/** Mean and max absolute difference of the outputs */
+		public final double meanAbsError, maxAbsError;
+		/**
+		 * Fraction of the inputs for which both precisions make the same choice: the same largest
+		 * output, or for a network with a single output, the same side of 0.5
+		 */
+		public final double agreement;
+
+		public Calibration(Precision precision, int samples, double meanAbsError, double maxAbsError, double agreement) {
+			this.precision = precision;
+			this.samples = samples;
+			this.meanAbsError = meanAbsError;
+			this.maxAbsError = maxAbsError;
+			this.agreement = agreement;
+		}
+
+		public String toString() {
+			return precision + " over " + samples + " inputs: mean error " + meanAbsError 
+					+ ", max error " + maxAbsError + ", agreement " + (agreement * 100) + "%";
+		}
+	}
+
+	/**
+	 * Calibrates this network for precision [p] with the inputs [xs], and makes its forward
+	 * propagations use [p]. For INT8, the scale and offset of the values of each neuron (other
+	 * than the output neurons) are set so that the range of the values it has for the inputs
+	 * [xs] is quantized to [-127, 127]. Use evaluate_precision on other inputs to find how 
+	 * much the calibrated precision changes the outputs.
+	 *
+	 * Calibrations are not saved by save_to_file, so a network has to be calibrated again
+	 * after it is read from a file, and an INT8 network after it is trained.
+	 */
+	public void calibrate(Precision p, List<List<Double>> xs) {
+		if (xs.isEmpty()) {
+			throw new RuntimeException("Neural network must be calibrated with at least one input.");
+		}
+
+		// Range of the values of each neuron
+		double[][] min = new double[LAYERS][SIZE];
+		double[][] max = new double[LAYERS][SIZE];
+		for (int i = 0; i < LAYERS; i++) {
+			Arrays.fill(min[i], Double.POSITIVE_INFINITY);
+			Arrays.fill(max[i], Double.NEGATIVE_INFINITY);
+		}
+		for (int b = 0; b < xs.size(); b++) {
+			load(xs.get(b));
+			propagate_double();
+			for (int i = 0; i < LAYERS; i++) {
+				for (int k = 0; k < SIZE; k++) {
+					min[i][k] = Math.min(min[i][k], values[i][k]);
+					max[i][k] = Math.max(max[i][k], values[i][k]);
+				}
+			}
+		}
+
+		if (p == Precision.INT8) {
+			double[][] scales = new double[LAYERS][SIZE];
+			float[][] offsets = new float[LAYERS][SIZE];
+			float[][] inverse = new float[LAYERS][SIZE];
+			for (int i = 0; i < LAYERS; i++) {
+				for (int k = 0; k < SIZE; k++) {
+					double range = max[i][k] - min[i][k];
+					scales[i][k] = (range == 0.0 ? 1.0 : range / 254);
+					offsets[i][k] = (float) ((max[i][k] + min[i][k]) / 2);
+					inverse[i][k] = (float) (1 / scales[i][k]);
+				}
+			}
+			inputScales = scales;
+			inputOffsets = offsets;
+			inverseInputScales = inverse;
+		}
+		set_precision(p);
+	}
+
+	/**
+	 * Returns how much the outputs with the precision of this network differ from the outputs
+	 * with the double weights for the inputs [xs]. These should not be the inputs the network
+	 * was calibrated with, which would hide any values outside of the calibrated ranges.
+	 */
+	public Calibration evaluate_precision(List<List<Double>> xs) {
+		if (xs.isEmpty()) {
+			throw new RuntimeException("Neural network precision must be evaluated with at least one input.");
+		}
+
+		// Outputs with the double weights
+		double[][] expected = new double[xs.size()][];
+		for (int b = 0; b < xs.size(); b++) {
+			load(xs.get(b));
+			propagate_double();
+			expected[b] = values[LAYERS].clone();
+		}
+
+		double totalError = 0.0, maxError = 0.0;
+		int agreed = 0;
+		for (int b = 0; b < xs.size(); b++) {
+			forward_prop(xs.get(b));
+			double[] out = output();
+			for (int j = 0; j < OUTPUT; j++) {
+				double error = Math.abs(out[j] - expected[b][j]);
+				totalError += error;
+				maxError = Math.max(maxError, error);
+			}
+			if (OUTPUT == 1 ? (out[0] < 0.5) == (expected[b][0] < 0.5) : argmax(out) == argmax(expected[b])) {
+				agreed++;
+			}
+		}
+		return new Calibration(precision, xs.size(), totalError / (xs.size() * OUTPUT), maxError, (double) agreed / xs.size());
+	}
+
+	/** Returns the index of the largest value of [a] */
+	private static int argmax(double[] a) {
+		int best = 0;
+		for (int j = 1; j < a.length; j++) {
+			if (a[j] > a[best])
+				best = j;
+		}
+		return best;
+	}
+
+	/*
+	 * The activation function sampled at SIGMOID_STEPS + 1 evenly spaced sums in
+	 * [-SIGMOID_RANGE, SIGMOID_RANGE], for the reduced precisions, which interpolate
+	 * between the samples instead of calling Math.exp (the function is within 1e-7
+	 * of 0 or 1 outside of the range)
+	 */
+	private static final float SIGMOID_RANGE = 1600f;
+	private static final int SIGMOID_STEPS = 4096;
+	private static final float[] SIGMOID_TABLE = new float[SIGMOID_STEPS + 1];
+	static {
+		for (int n = 0; n <= SIGMOID_STEPS; n++) {
+			double s = -SIGMOID_RANGE + 2.0 * SIGMOID_RANGE * n / SIGMOID_STEPS;
+			SIGMOID_TABLE[n] = (float) (1/(1+Math.exp(-s/100)));
+		}
+	}
+
+	/** Activation function for the reduced precisions (see SIGMOID_TABLE) */
+	private static float activate_fast(float s) {
+		float t = (s + SIGMOID_RANGE) * (SIGMOID_STEPS / (2 * SIGMOID_RANGE));
+		if (t <= 0f)
+			return SIGMOID_TABLE[0];
+		if (t >= SIGMOID_STEPS)
+			return SIGMOID_TABLE[SIGMOID_STEPS];
+		int n = (int) t;
+		float f = t - n;
+		return SIGMOID_TABLE[n] + f * (SIGMOID_TABLE[n + 1] - SIGMOID_TABLE[n]);
+	}
+
 	/** Activation function for the neural net (sigmoid). */
 	private double activate(double s) {
 		return 1/(1+Math.exp(-s/100));
@@ -260,58 +793,78 @@ public class NeuralNet {
 		return 1.0/100*a*(1-a);
 	}
 
-	/** Back propagation based on data. */
-	public void back_prop(List<Data> data) {
-		Map<Neuron, Double> delta = new HashMap<>();
-		// Initialize with all neurons in neural net and keys of 0
-		for (int i = 0; i < nn.size(); i++) {
-			for (Neuron n : nn.get(i)) {
-				delta.put(n, 0.0);
+	/**
+	 * Sets delta[i][j] to the gradient of neuron j of layer i for the last input
+	 * forward propagated and the expected output y (for every layer i >= 1).
+	 */
+	private void compute_deltas(List<Double> y, double[][] delta) {
+		// update last layer gradients
+		for (int j = 0; j < OUTPUT; j++) {
+			delta[LAYERS][j] = derivative(sums[LAYERS][j]) * (y.get(j) - values[LAYERS][j]);
+		}
+		// update hidden layer gradients
+		for (int i = LAYERS - 1; i >= 1; i--) {
+			double[] next = weights[i + 1];
+			int width = width(i);
+			for (int j = 0; j < width; j++) {
+				double s = 0.0;
+				for (int n = 0; n < delta[i + 1].length; n++) {
+					s += next[n*width + j] * delta[i + 1][n];
+				}
+				delta[i][j] = derivative(sums[i][j]) * s;
 			}
 		}
+	}
 
-		for (int t = 0; t < EPOCHS; t++) {
-			for (Data d : data) {
-				forward_prop(d.x);
-				// update last layer gradients
-				for (int i = 0; i < nn.get(LAYERS).length; i++) {
-					List<Double> feed = input_values(nn.get(LAYERS)[i]);
-					delta.put(nn.get(LAYERS)[i], derivative(dot(nn.get(LAYERS)[i].weights, feed)) * (d.y.get(i) - nn.get(LAYERS)[i].value));
-				}
-				// update hidden layer gradients
-				for (int i = LAYERS - 1; i >= 0; i--) {
-					for (Neuron n : nn.get(i)) {
-						List<Double> feed = input_values(n);
-
-						List<Double> u = new ArrayList<>();
-						List<Double> q = new ArrayList<>();
-						for (Neuron next : nn.get(i + 1)) {
-							u.add(next.weights.get(next.inputs.indexOf(n)));
-							q.add(delta.get(next));
-						}
+	/** Adds ALPHA * (input value) * delta to every weight, using the values of the last forward propagation */
+	private void update_weights(double[][] delta) {
+		for (int i = 1; i <= LAYERS; i++) {
+			double[] w = weights[i];
+			double[] in = values[i - 1];
+			int inputs = in.length;
+			for (int j = 0; j < width(i); j++) {
+				double d = delta[i][j];
+				int row = j * inputs;
+				for (int k = 0; k < inputs; k++) {
+					w[row + k] += ALPHA * in[k] * d;
+				}
+			}
+		}
+	}
 
-						delta.put(n, derivative(dot(n.weights, feed)) * dot(u, q));
+	/** Returns an array of zeros with the shape of values (one entry per neuron) */
+	private double[][] new_deltas() {
+		double[][] delta = new double[LAYERS + 1][];
+		for (int i = 0; i <= LAYERS; i++) {
+			delta[i] = new double[width(i)];
+		}
+		return delta;
+	}
 
-					}
-				}
+	/** Back propagation based on data. */
+	public void back_prop(List<Data> data) {
+		double[][] delta = new_deltas();
+
+		for (int t = 0; t < EPOCHS; t++) {
+			for (Data d : data) {
+				load(d.x);
+				propagate_double();
+				compute_deltas(d.y, delta);
 				// update all weights
-				for (int layer = 0; layer < nn.size(); layer++) {
-					for (Neuron unit : nn.get(layer)) {
-						for (int i = 0; i < unit.inputs.size(); i++) {
-							unit.weights.set(i, unit.weights.get(i) + ALPHA * unit.inputs.get(i).value * delta.get(unit));
-						}
-					}
-				}
+				update_weights(delta);
 			}
 		}
+		reset_reduced_precision();
 	}
 
-	/** Separates the data into batches of size batch_size. */
+	/**
+	 * Separates the data into batches of size batch_size, after shuffling it with
+	 * BattleRandom (so training is reproducible from the current thread's seed).
+	 */
 	private static List<List<Data>> to_batches(List<Data> data, int batch_size) {
 		// Shuffles data randomly
-		Random rand = new Random(System.nanoTime());
 		for (int i = 0; i < data.size(); i++) {
-			int swap = rand.nextInt(data.size() - i) + i;
+			int swap = BattleRandom.nextInt(data.size() - i) + i;
 			Data tmp = data.get(i);
 			data.set(i, data.get(swap));
 			data.set(swap, tmp);
@@ -323,79 +876,377 @@ public class NeuralNet {
 		// Separate the data into batches
 		while (idx < data.size()) {
 			List<Data> next_layer = new ArrayList<>();
-			// Populate the batch and add it to the return
-			while (next_layer.size() < batch_size) {
-				next_layer.add(data.get(idx++));	
+			// Populate the batch and add it to the return (the last batch may be smaller)
+			while (next_layer.size() < batch_size && idx < data.size()) {
+				next_layer.add(data.get(idx++));
 			}
 			ret.add(next_layer);
 		}
 		return ret;
 	}
-	
-	/** 
-	 * Back propagation using stochastic gradient descent based on data. 
+
+	/**
+	 * Back propagation using stochastic gradient descent based on data.
 	 */
 	public void back_prop_batch(List<Data> data, int batch_size) {
 		back_prop_batch_with_checkpoints(data, batch_size, null, 0);
 	}
-	
-	/** 
-	 * Back propagation using stochastic gradient descent based on data. 
-	 * 
-	 * if [checkpointFilePath] != null, after every [checkpointNumIterations] iterations, 
-	 * the current weights will be saved at [checkpointFilePath][t].txt
+
+	/**
+	 * Rule for moving the weights of a network along the gradients found by train(). An
+	 * optimizer keeps state about the weights of the network it trains (e.g. its velocity),
+	 * so it should only be used to train one network.
 	 */
-	public void back_prop_batch_with_checkpoints(List<Data> data, int batch_size, String checkpointFilePath, int checkpointNumIterations) {
-		for (int t = 0; t < EPOCHS; t++) {
-			// Separate the data into batches to be used for training on this epoch
-			List<List<Data>> batches = to_batches(data, batch_size);
+	public static abstract class Optimizer {
+		/**
+		 * Moves [weights] (see NeuralNet.weights) along [gradient], the sum of the gradients
+		 * of [samples] samples, in the direction which decreases their error
+		 */
+		public abstract void update(double[][] weights, double[][] gradient, int samples);
+	}
+
+	/** Plain gradient descent: the weights move by rate times the mean gradient */
+	public static class SGD extends Optimizer {
+		private double rate;
+
+		public SGD(double rate) {
+			this.rate = rate;
+		}
 
-			for (List<Data> batch : batches) {
+		public void update(double[][] weights, double[][] gradient, int samples) {
+			double scale = rate / samples;
+			for (int i = 1; i < weights.length; i++) {
+				double[] w = weights[i];
+				double[] g = gradient[i];
+				for (int n = 0; n < w.length; n++) {
+					w[n] += scale * g[n];
+				}
+			}
+		}
+	}
 
-				Map<Neuron, Double> delta = new HashMap<>();
-				// Initialize with all neurons in neural net and keys of 0
-				for (int i = 0; i < nn.size(); i++) {
-					for (Neuron n : nn.get(i)) {
-						delta.put(n, 0.0);
+	/**
+	 * Gradient descent with momentum: the weights move by rate times a velocity, which is
+	 * the mean gradient plus [momentum] times the previous velocity
+	 */
+	public static class Momentum extends Optimizer {
+		private double rate, momentum;
+		private double[][] velocity;
+
+		public Momentum(double rate, double momentum) {
+			this.rate = rate;
+			this.momentum = momentum;
+		}
+
+		public void update(double[][] weights, double[][] gradient, int samples) {
+			if (velocity == null)
+				velocity = zeros_like(weights);
+			for (int i = 1; i < weights.length; i++) {
+				double[] w = weights[i];
+				double[] g = gradient[i];
+				double[] v = velocity[i];
+				for (int n = 0; n < w.length; n++) {
+					v[n] = momentum * v[n] + g[n] / samples;
+					w[n] += rate * v[n];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adam (Kingma and Ba, 2014): each weight moves by about rate in the direction of its
+	 * mean gradient, scaled down when its gradients have been inconsistent. This makes the
+	 * step size independent of the scale of the gradients, which differs a lot between the
+	 * layers of these networks (the sigmoid divides sums by 100).
+	 */
+	public static class Adam extends Optimizer {
+		private double rate, beta1, beta2, epsilon;
+		/** Moving averages of the gradients and of their squares, and the number of updates so far */
+		private double[][] m, v;
+		private int t;
+
+		/** Adam with the usual decay rates of its moving averages */
+		public Adam(double rate) {
+			this(rate, 0.9, 0.999, 1e-8);
+		}
+
+		public Adam(double rate, double beta1, double beta2, double epsilon) {
+			this.rate = rate;
+			this.beta1 = beta1;
+			this.beta2 = beta2;
+			this.epsilon = epsilon;
+		}
+
+		public void update(double[][] weights, double[][] gradient, int samples) {
+			if (m == null) {
+				m = zeros_like(weights);
+				v = zeros_like(weights);
+			}
+			t++;
+			// corrections for the averages starting at 0
+			double c1 = 1 - Math.pow(beta1, t), c2 = 1 - Math.pow(beta2, t);
+			for (int i = 1; i < weights.length; i++) {
+				double[] w = weights[i];
+				double[] g = gradient[i];
+				double[] mi = m[i], vi = v[i];
+				for (int n = 0; n < w.length; n++) {
+					double mean = g[n] / samples;
+					mi[n] = beta1 * mi[n] + (1 - beta1) * mean;
+					vi[n] = beta2 * vi[n] + (1 - beta2) * mean * mean;
+					w[n] += rate * (mi[n] / c1) / (Math.sqrt(vi[n] / c2) + epsilon);
+				}
+			}
+		}
+	}
+
+	/** Returns an array of zeros with the shape of [a] */
+	private static double[][] zeros_like(double[][] a) {
+		double[][] z = new double[a.length][];
+		for (int i = 0; i < a.length; i++) {
+			z[i] = new double[a[i].length];
+		}
+		return z;
+	}
+
+	/**
+	 * Number of threads each batch of train() is split across, which can be
+	 * changed at any time (one per available core by default)
+	 */
+	public int trainingThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Pool of daemon threads that batches are trained on. Created the first time it is
+	 * needed by get_training_pool()
+	 */
+	private static ExecutorService trainingPool;
+
+	/**
+	 * Returns the pool batches are trained on, creating it if it doesn't exist yet. The
+	 * threads are daemon threads so that an idle pool doesn't keep the program running.
+	 */
+	private static synchronized ExecutorService get_training_pool() {
+		if (trainingPool == null) {
+			trainingPool = Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "NeuralNet-trainer");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return trainingPool;
+	}
+
+	/**
+	 * Buffers of one of the threads a batch is split across, which finds the gradients
+	 * of its part of the batch with a forward and backward pass over all of its samples
+	 * at once (one layer at a time, like forward_prop_batch).
+	 *
+	 * values[i][b], sums[i][b] and delta[i][b] are the values, weighted sums and deltas
+	 * of layer i for sample b of the part (with the same meaning as for a single sample).
+	 */
+	private static class Trainer {
+		final NeuralNet net;
+		double[][][] values, sums, delta;
+		/** Sum of the gradients of the samples of the part */
+		final double[][] gradient;
+
+		Trainer(NeuralNet net) {
+			this.net = net;
+			gradient = zeros_like(net.weights);
+			allocate(0);
+		}
+
+		/** Makes room for [samples] samples in the buffers */
+		private void allocate(int samples) {
+			values = new double[net.LAYERS + 1][samples][];
+			sums = new double[net.LAYERS + 1][samples][];
+			delta = new double[net.LAYERS + 1][samples][];
+			for (int i = 0; i <= net.LAYERS; i++) {
+				for (int b = 0; b < samples; b++) {
+					values[i][b] = new double[net.width(i)];
+					sums[i][b] = new double[net.width(i)];
+					delta[i][b] = new double[net.width(i)];
+				}
+			}
+		}
+
+		/** Sets gradient to the sum of the gradients of batch[from, to) */
+		void train(List<Data> batch, int from, int to) {
+			int samples = to - from;
+			if (values[0].length < samples)
+				allocate(samples);
+			int layers = net.LAYERS;
+			double[][] weights = net.weights;
+
+			// forward pass
+			for (int b = 0; b < samples; b++) {
+				List<Double> x = batch.get(from + b).x;
+				if (x.size() != net.SIZE) {
+					throw new RuntimeException("Input invalid into neural network.");
+				}
+				for (int k = 0; k < x.size(); k++) {
+					values[0][b][k] = x.get(k);
+				}
+			}
+			for (int i = 1; i <= layers; i++) {
+				int width = net.width(i);
+				for (int j = 0; j < width; j += BLOCK_ROWS) {
+					for (int b = 0; b < samples; b++) {
+						net.multiply(weights[i], values[i - 1][b], sums[i][b], j, Math.min(j + BLOCK_ROWS, width));
+					}
+				}
+				for (int b = 0; b < samples; b++) {
+					for (int j = 0; j < width; j++) {
+						// The output layer is not activated (same as forward_prop)
+						values[i][b][j] = (i < layers ? net.activate(sums[i][b][j]) : sums[i][b][j]);
+					}
+				}
+			}
+
+			// backward pass (same deltas as compute_deltas, and the activations of the
+			// hidden layers are reused for their derivatives)
+			for (int b = 0; b < samples; b++) {
+				List<Double> y = batch.get(from + b).y;
+				for (int j = 0; j < net.OUTPUT; j++) {
+					delta[layers][b][j] = net.derivative(sums[layers][b][j]) * (y.get(j) - values[layers][b][j]);
+				}
+			}
+			for (int i = layers - 1; i >= 1; i--) {
+				double[] next = weights[i + 1];
+				int width = net.width(i);
+				for (int b = 0; b < samples; b++) {
+					double[] d = delta[i][b];
+					double[] dNext = delta[i + 1][b];
+					Arrays.fill(d, 0.0);
+					// d = (dNext * weights[i + 1]), going through the weights row by row
+					for (int n = 0; n < dNext.length; n++) {
+						double dn = dNext[n];
+						int row = n * width;
+						for (int j = 0; j < width; j++) {
+							d[j] += next[row + j] * dn;
+						}
+					}
+					double[] a = values[i][b];
+					for (int j = 0; j < width; j++) {
+						d[j] = 1.0/100*a[j]*(1-a[j]) * d[j];
 					}
 				}
+			}
 
-				for (Data d : batch) {
-					forward_prop(d.x);
-					// update last layer gradients
-					for (int i = 0; i < nn.get(LAYERS).length; i++) {
-						List<Double> feed = input_values(nn.get(LAYERS)[i]);
-						delta.put(nn.get(LAYERS)[i], derivative(dot(nn.get(LAYERS)[i].weights, feed)) * (d.y.get(i) - nn.get(LAYERS)[i].value));
+			// gradient[i] = (delta of layer i) * (values of layer i - 1), summed over the samples
+			for (int i = 1; i <= layers; i++) {
+				double[] g = gradient[i];
+				Arrays.fill(g, 0.0);
+				int inputs = net.width(i - 1);
+				for (int j = 0; j < net.width(i); j++) {
+					int row = j * inputs;
+					for (int b = 0; b < samples; b++) {
+						double d = delta[i][b][j];
+						double[] in = values[i - 1][b];
+						for (int k = 0; k < inputs; k++) {
+							g[row + k] += in[k] * d;
+						}
 					}
-					// update hidden layer gradients
-					for (int i = LAYERS - 1; i >= 0; i--) {
-						for (Neuron n : nn.get(i)) {
-							List<Double> feed = input_values(n);
+				}
+			}
+		}
+	}
 
-							List<Double> u = new ArrayList<>();
-							List<Double> q = new ArrayList<>();
-							for (Neuron next : nn.get(i + 1)) {
-								u.add(next.weights.get(next.inputs.indexOf(n)));
-								q.add(delta.get(next));
-							}
+	/**
+	 * Back propagation using stochastic gradient descent based on data.
+	 *
+	 * if [checkpointFilePath] != null, after every [checkpointNumIterations] iterations,
+	 * the current weights will be saved at [checkpointFilePath][t].txt
+	 */
+	public void back_prop_batch_with_checkpoints(List<Data> data, int batch_size, String checkpointFilePath, int checkpointNumIterations) {
+		train(data, batch_size, new SGD(ALPHA), 1, checkpointFilePath, checkpointNumIterations);
+	}
 
-							delta.put(n, derivative(dot(n.weights, feed)) * dot(u, q));
+	/** Same as train() without gradient accumulation or checkpoints */
+	public void train(List<Data> data, int batch_size, Optimizer optimizer) {
+		train(data, batch_size, optimizer, 1, null, 0);
+	}
 
-						}
+	/**
+	 * Trains the network on [data] for EPOCHS epochs. Each epoch, the data is shuffled and
+	 * separated into batches of size batch_size, and the weights are updated by [optimizer]
+	 * with the gradients of every [accumulation_steps] batches (and of the batches left at
+	 * the end of the epoch), which trains like batches accumulation_steps times larger
+	 * without their memory.
+	 *
+	 * Each batch is split into trainingThreads contiguous parts which are trained at once,
+	 * each thread summing the gradients of its part. The sums are added up in the same order
+	 * every time.
+	 *
+	 * if [checkpointFilePath] != null, after every [checkpointNumIterations] iterations,
+	 * the current weights will be saved at [checkpointFilePath][t].txt (in the format of
+	 * save_to_file, so training can be continued from a checkpoint, although the state of
+	 * the optimizer is not saved)
+	 */
+	public void train(List<Data> data, int batch_size, Optimizer optimizer, int accumulation_steps, String checkpointFilePath, int checkpointNumIterations) {
+		if (accumulation_steps <= 0) {
+			throw new RuntimeException("Neural network must accumulate gradients over at least one batch: " + accumulation_steps);
+		}
+		if (checkpointFilePath != null && checkpointNumIterations <= 0) {
+			throw new RuntimeException("Neural network checkpoints must be at least one iteration apart: " + checkpointNumIterations);
+		}
+
+		// Trainers only read this network (and its weights are not changed while a batch
+		// is trained), so they all share it
+		Trainer[] trainers = new Trainer[Math.max(1, Math.min(trainingThreads, batch_size))];
+		for (int p = 0; p < trainers.length; p++) {
+			trainers[p] = new Trainer(this);
+		}
+		List<Future<?>> parts = new ArrayList<>();
+		double[][] gradient = zeros_like(weights);
+		int samples = 0;
+
+		for (int t = 0; t < EPOCHS; t++) {
+			// Separate the data into batches to be used for training on this epoch
+			List<List<Data>> batches = to_batches(data, batch_size);
+
+			for (int n = 0; n < batches.size(); n++) {
+				List<Data> batch = batches.get(n);
+				int threads = Math.min(trainers.length, batch.size());
+
+				// Part p of the batch is [p * size / threads, (p + 1) * size / threads),
+				// and this thread trains part 0 while the pool trains the others
+				parts.clear();
+				for (int p = 1; p < threads; p++) {
+					Trainer trainer = trainers[p];
+					int from = p * batch.size() / threads, to = (p + 1) * batch.size() / threads;
+					parts.add(get_training_pool().submit(() -> trainer.train(batch, from, to)));
+				}
+				trainers[0].train(batch, 0, batch.size() / threads);
+				try {
+					for (Future<?> part : parts) {
+						part.get();
 					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while training neural network.");
+				}
+				catch (ExecutionException e) {
+					throw new RuntimeException("Error when training neural network.", e.getCause());
+				}
 
-					for (Neuron n : delta.keySet()) {
-						delta.put(n, delta.get(n)/batch_size);
+				for (int p = 0; p < threads; p++) {
+					for (int i = 1; i <= LAYERS; i++) {
+						double[] g = trainers[p].gradient[i];
+						for (int k = 0; k < g.length; k++) {
+							gradient[i][k] += g[k];
+						}
 					}
 				}
+				samples += batch.size();
 
 				// update all weights
-				for (int layer = 0; layer < nn.size(); layer++) {
-					for (Neuron unit : nn.get(layer)) {
-						for (int i = 0; i < unit.inputs.size(); i++) {
-							unit.weights.set(i, unit.weights.get(i) + ALPHA * unit.inputs.get(i).value * delta.get(unit));
-						}
+				if ((n + 1) % accumulation_steps == 0 || n == batches.size() - 1) {
+					optimizer.update(weights, gradient, samples);
+					for (int i = 1; i <= LAYERS; i++) {
+						Arrays.fill(gradient[i], 0.0);
 					}
+					samples = 0;
 				}
 			}
 
@@ -404,146 +1255,197 @@ public class NeuralNet {
 				System.out.println("t = " + t);
 			}
 		}
+		reset_reduced_precision();
 	}
 
-	public static List<Double> input(GameState gs) {
-		List<Double> x = new ArrayList<>();
+	/** Number of features written by input() */
+	public static final int INPUT_SIZE = 77;
 
-		// Consider the active pokemon's move-set
-		for (Move m : gs.p1_team.activePokemon.moves) {
-			if (m == null) {
-				for (int i = 0; i < 10; i++) {
-					x.add(0.0);
-				}
+	/* Offsets of the groups of features written by input() */
+	private static final int EFFECTIVENESS_OFFSET = 40, DEFENSE_OFFSET = 64, SPEED_OFFSET = 76;
+
+	/*
+	 * Number of moves of the active pokemon, of pokemon of the opponent, and of the player's
+	 * pokemon which aren't active, that there are features for
+	 */
+	private static final int MAX_MOVES = 4, MAX_OPPONENTS = 6, MAX_BENCH = 5;
+
+	/** Number of features of each of the active pokemon's moves */
+	private static final int MOVE_FEATURE_COUNT = 10;
+	/** Index of the counter feature in the block of features of a move */
+	private static final int COUNTER_FEATURE = 6;
+
+	/**
+	 * MOVE_FEATURES[id] is the block of features of the move with that id (see input()).
+	 * The counter feature is 1 for counter, and is cleared by input() if the opponent has
+	 * no physical move. PHYSICAL_MOVE[id] is whether that move is a physical attack.
+	 */
+	private static final double[][] MOVE_FEATURES;
+	private static final boolean[] PHYSICAL_MOVE;
+	/** Number of longs in a bit set of move ids */
+	private static final int MOVE_SET_WORDS = (Move.moveCount() + 63) / 64;
+
+	static {
+		MOVE_FEATURES = new double[Move.moveCount()][];
+		PHYSICAL_MOVE = new boolean[Move.moveCount()];
+		for (int id = 0; id < Move.moveCount(); id++) {
+			Move m = Move.getMove(id);
+			if (m == null)
 				continue;
-			}
-			// Move statistics
-			x.add((double)m.power);
-			x.add((double)m.accuracy);
-			x.add(m.stat_boost);
-			x.add(m.status_chance);
-			x.add(m.health_decrease);
-			x.add((double)m.priority);
+			MOVE_FEATURES[id] = new double[] {
+				// Move statistics
+				m.power, m.accuracy, m.stat_boost, m.status_chance, m.health_decrease, m.priority,
+				// Whether the move is counter, bide, requires charging, and is substitute
+				(m.name.equals("counter") ? 1 : 0),
+				(m.name.equals("bide") ? 1 : 0),
+				(m.name.equals("hyperbeam") || m.name.equals("skyattack") ? 1 : 0),
+				(m.name.equals("substitute") ? 1 : 0)
+			};
+			PHYSICAL_MOVE[id] = TeamGenerator.getType(m.name).equals("physical");
+		}
+	}
 
-			/* Check if counter is a viable choice (1 if yes 0 otherwise). Must also
-			 * Check if the opponent pokemon has a physical move in order to counter. */
-			boolean hasPhysical = false;
-			for (Move opp_move : gs.p2_pokemon.get(gs.p2_active)) {
-				if (opp_move != null && TeamGenerator.getType(opp_move.name).equals("physical")) {
-					hasPhysical = true;
-				}
-			}
-			if (m.name.equals("counter") && hasPhysical) {
-				x.add(1.0);
-			}
-			else {
-				x.add(0.0);
-			}
+	/**
+	 * Returns the features of [gs], the input of the policy and valuation networks.
+	 * Allocates a list, so use input(GameState, double[]) where the input is evaluated
+	 * right away (e.g. during a search).
+	 */
+	public static List<Double> input(GameState gs) {
+		double[] features = new double[INPUT_SIZE];
+		input(gs, features);
 
-			// Check if the move is bide (1 yes 0 otherwise)
-			if (m.name.equals("bide")) {
-				x.add(1.0);
-			}
-			else {
-				x.add(0.0);
-			}
+		List<Double> x = new ArrayList<>(INPUT_SIZE);
+		for (double f : features) {
+			x.add(f);
+		}
+		return x;
+	}
 
-			// Check if move requires charging (1 if yes, 0 otherwise)
-			if (m.name.equals("hyperbeam") || m.name.equals("skyattack")) {
-				x.add(1.0);
-			}
-			else {
-				x.add(0.0);
-			}
+	/**
+	 * Writes the INPUT_SIZE features of [gs] to x[0] to x[INPUT_SIZE - 1], without
+	 * allocating anything
+	 */
+	public static void input(GameState gs, double[] x) {
+		Pokemon active = gs.p1_team.activePokemon;
+		Set<Move> opponentMoves = gs.p2ActiveKnownMoves();
+		boolean hasPhysical = has_physical(opponentMoves);
 
-			// Check if the move is substitute
-			if (m.name.equals("substitute")) {
-				x.add(1.0);
-			}
-			else {
-				x.add(0.0);
-			}
+		// Consider the active pokemon's move-set
+		int n = 0;
+		for (Move m : active.moves) {
+			move_features(x, n, m, hasPhysical);
+			n += MOVE_FEATURE_COUNT;
 		}
 		// Ensure that the x is properly populated
-		while (x.size() < 40) {
-			x.add(0.0);
+		while (n < EFFECTIVENESS_OFFSET) {
+			x[n++] = 0.0;
 		}
 
 		// Consider the active pokemon's effectiveness against the enemy team
-		cal_effect(x, gs.p1_team.activePokemon.moves, gs.p2_pokemon.keySet());
+		n = cal_effect(x, n, active.moves, gs.p2_pokemon.keySet());
 		// Ensure that the x is properly populated
-		while (x.size() < 64) {
-			x.add(0.0);
+		while (n < DEFENSE_OFFSET) {
+			x[n++] = 0.0;
 		}
 
 		// Consider the opponent's active against player one's team
-		x.add(cal_def(gs.p1_team.activePokemon, gs.p2_pokemon.get(gs.p2_active)));
-		if (gs.p1_team.activePokemon.hasMajorStatus()) {
-			x.add(1.0);
-		}
-		else {
-			x.add(0.0);
-		}
+		x[n++] = cal_def(active, opponentMoves);
+		x[n++] = (active.hasMajorStatus() ? 1.0 : 0.0);
 		for (Pokemon p : gs.p1_team.pokemonList) {
-			if (!p.species.equals(gs.p1_team.activePokemon.species)) {
-				if (p.isAlive()) {
-					x.add(cal_def(p, gs.p2_pokemon.get(gs.p2_active)));
-					if (p.hasMajorStatus()) {
-						x.add(1.0);
-					}
-					else {
-						x.add(0.0);
-					}
-				}
-				// Pokemon is fainted and cannot be used
-				else {
-					x.add(4.0);
-					x.add(1.0);
-				}
+			// The active pokemon may be the transformation of one of the team's pokemon
+			if (p != active && p.status.transformed != active) {
+				team_features(x, n, p, opponentMoves);
+				n += 2;
 			}
 		}
 
 		// Ensure that the x is properly populated
-		while (x.size() < 76) {
-			x.add(0.0);
+		while (n < SPEED_OFFSET) {
+			x[n++] = 0.0;
 		}
 
-		// Compare speeds: 1 if faster, 0 otherwise.
-		if (Pokedex.getDex().get(gs.p1_team.activePokemon.species).baseStats[4] > Pokedex.getDex().get(gs.p2_active.species).baseStats[4]) {
-			x.add(1.0);
+		x[n] = speed_feature(gs);
+	}
+
+	/**
+	 * Returns whether the opponent has a physical move, in which case counter is a
+	 * viable choice
+	 */
+	private static boolean has_physical(Set<Move> opponentMoves) {
+		for (Move opp_move : opponentMoves) {
+			if (opp_move != null && PHYSICAL_MOVE[opp_move.id]) {
+				return true;
+			}
 		}
+		return false;
+	}
+
+	/** Writes the block of features of move m (which may be null) to x, starting at x[n] */
+	private static void move_features(double[] x, int n, Move m, boolean hasPhysical) {
+		if (m == null) {
+			Arrays.fill(x, n, n + MOVE_FEATURE_COUNT, 0.0);
+			return;
+		}
+		System.arraycopy(MOVE_FEATURES[m.id], 0, x, n, MOVE_FEATURE_COUNT);
+		if (!hasPhysical) {
+			x[n + COUNTER_FEATURE] = 0.0;
+		}
+	}
+
+	/**
+	 * Writes the two features of p, one of the player's pokemon which isn't active, to x
+	 * starting at x[n]: whether a move in opponentMoves is super-effective versus p, and
+	 * whether p has a major status
+	 */
+	private static void team_features(double[] x, int n, Pokemon p, Set<Move> opponentMoves) {
+		if (p.isAlive()) {
+			x[n] = cal_def(p, opponentMoves);
+			x[n + 1] = (p.hasMajorStatus() ? 1.0 : 0.0);
+		}
+		// Pokemon is fainted and cannot be used
 		else {
-			x.add(0.0);
+			x[n] = 4.0;
+			x[n + 1] = 1.0;
 		}
+	}
 
-		return x;
+	/** Compare speeds: 1 if faster, 0 otherwise. */
+	private static double speed_feature(GameState gs) {
+		return (gs.p1_team.activePokemon.speciesData.getBaseStat(4) > gs.p2_active.speciesData.getBaseStat(4) ? 1.0 : 0.0);
 	}
 
 	/**
-	 * Modify x to reflect the effectiveness of moveset on the pokemon in opponent.
+	 * Writes the effectiveness of moveset on the pokemon in opponent to x, starting
+	 * at x[n]. Returns the index after the last feature written.
 	 */
-	private static void cal_effect(List<Double> x, Move[] moveset, Set<Pokemon> opponent) {
+	private static int cal_effect(double[] x, int n, Move[] moveset, Set<Pokemon> opponent) {
 		for (Move m : moveset) {
 			// Counter used to account for unseen pokemon
 			int fill_counter = 0;
 			for (Pokemon p : opponent) {
-				if (m == null) {
-					x.add(0.0);
-				}
-				else if (p.isAlive()) {
-					x.add(m.type.effectiveness(p.types[0]) * m.type.effectiveness(p.types[1]));
-				}
-				// Use neutral value if opponent pokemon is fainted
-				else {
-					x.add(0.0);
-				}
+				x[n++] = effect(m, p);
 				fill_counter++;
 			}
 			// Assume neutral damage for unseen pokemon
-			while (fill_counter++ < 6) {
-				x.add(1.0);
+			while (fill_counter++ < MAX_OPPONENTS) {
+				x[n++] = 1.0;
 			}
 		}
+		return n;
+	}
+
+	/** Returns the effectiveness of m (which may be null) on the opponent's pokemon p */
+	private static double effect(Move m, Pokemon p) {
+		if (m == null) {
+			return 0.0;
+		}
+		else if (p.isAlive()) {
+			return m.type.effectiveness(p.types[0], p.types[1]);
+		}
+		// Use neutral value if opponent pokemon is fainted
+		else {
+			return 0.0;
+		}
 	}
 
 	/**
@@ -551,7 +1453,7 @@ public class NeuralNet {
 	 */
 	private static double cal_def(Pokemon p, Set<Move> moveset) {
 		for (Move m : moveset) {
-			if (m != null && m.type.effectiveness(p.types[0]) * m.type.effectiveness(p.types[1]) > 1.0) {
+			if (m != null && m.type.effectiveness(p.types[0], p.types[1]) > 1.0) {
 				return 1;
 			}
 		}
@@ -559,6 +1461,161 @@ public class NeuralNet {
 		return 0;
 	}
 
+	/**
+	 * Features of a game state (see input()) along with what they were computed from, so
+	 * that they can be updated to the features of a later state of the same battle (e.g. a
+	 * successor in a search tree) by only rewriting the features of the pokemon which
+	 * changed. Pokemon are compared by the values the features depend on rather than by
+	 * reference, since the pokemon of a successor state are copies.
+	 */
+	public static class Features {
+		/** Same as the features written by input(GameState, double[]) for the last state encoded */
+		public final double[] x = new double[INPUT_SIZE];
+
+		/** Whether a state has been encoded, before which every feature is rewritten */
+		private boolean encoded;
+		/** The active pokemon's moves */
+		private Move[] moves = new Move[MAX_MOVES];
+		private int moveCount;
+		/** Bit set of the ids of the moves known for the opponent's active pokemon */
+		private long[] opponentMoves = new long[MOVE_SET_WORDS], nextOpponentMoves = new long[MOVE_SET_WORDS];
+		private boolean hasPhysical;
+		/** Keys (see key()) of the opponent's pokemon, and of the player's pokemon */
+		private int[] opponentKeys = new int[MAX_OPPONENTS];
+		private int activeKey;
+		private int[] teamKeys = new int[MAX_BENCH];
+
+		/** Key of an opponent pokemon which hasn't been seen, or an unused slot of the player's team */
+		private static final int NONE = -1;
+
+		/** Copies the features of [f], and what they were computed from */
+		public void copyFrom(Features f) {
+			System.arraycopy(f.x, 0, x, 0, INPUT_SIZE);
+			encoded = f.encoded;
+			System.arraycopy(f.moves, 0, moves, 0, MAX_MOVES);
+			moveCount = f.moveCount;
+			System.arraycopy(f.opponentMoves, 0, opponentMoves, 0, MOVE_SET_WORDS);
+			hasPhysical = f.hasPhysical;
+			System.arraycopy(f.opponentKeys, 0, opponentKeys, 0, MAX_OPPONENTS);
+			activeKey = f.activeKey;
+			System.arraycopy(f.teamKeys, 0, teamKeys, 0, MAX_BENCH);
+		}
+
+		/**
+		 * Sets x to the features of [gs], only rewriting those whose inputs differ from
+		 * the last state encoded. Allocates nothing.
+		 */
+		public void encode(GameState gs) {
+			Pokemon active = gs.p1_team.activePokemon;
+			Set<Move> knownMoves = gs.p2ActiveKnownMoves();
+
+			// The opponent's known moves affect the counter feature and the defense features
+			Arrays.fill(nextOpponentMoves, 0);
+			for (Move m : knownMoves) {
+				if (m != null)
+					nextOpponentMoves[m.id / 64] |= 1L << (m.id % 64);
+			}
+			boolean opponentMovesChanged = !encoded || !Arrays.equals(opponentMoves, nextOpponentMoves);
+			long[] tmp = opponentMoves;
+			opponentMoves = nextOpponentMoves;
+			nextOpponentMoves = tmp;
+			boolean physical = has_physical(knownMoves);
+
+			// The active pokemon's moves affect the move features and the effectiveness features
+			boolean movesChanged = !encoded || !sameMoves(active.moves);
+			if (movesChanged || physical != hasPhysical) {
+				for (int i = 0; i < MAX_MOVES; i++) {
+					move_features(x, MOVE_FEATURE_COUNT * i, (i < active.moves.length ? active.moves[i] : null), physical);
+				}
+			}
+			if (movesChanged) {
+				moveCount = active.moves.length;
+				System.arraycopy(active.moves, 0, moves, 0, moveCount);
+			}
+			hasPhysical = physical;
+
+			int j = 0;
+			for (Pokemon p : gs.p2_pokemon.keySet()) {
+				updateOpponent(j++, p, movesChanged);
+			}
+			while (j < MAX_OPPONENTS) {
+				updateOpponent(j++, null, movesChanged);
+			}
+
+			int key = key(active);
+			if (opponentMovesChanged || key != activeKey) {
+				x[DEFENSE_OFFSET] = cal_def(active, knownMoves);
+				x[DEFENSE_OFFSET + 1] = (active.hasMajorStatus() ? 1.0 : 0.0);
+				activeKey = key;
+			}
+			int slot = 0;
+			for (Pokemon p : gs.p1_team.pokemonList) {
+				// The active pokemon may be the transformation of one of the team's pokemon
+				if (p != active && p.status.transformed != active) {
+					key = key(p);
+					if (opponentMovesChanged || key != teamKeys[slot]) {
+						team_features(x, DEFENSE_OFFSET + 2 + 2*slot, p, knownMoves);
+						teamKeys[slot] = key;
+					}
+					slot++;
+				}
+			}
+			for (; slot < MAX_BENCH; slot++) {
+				if (!encoded || teamKeys[slot] != NONE) {
+					x[DEFENSE_OFFSET + 2 + 2*slot] = 0.0;
+					x[DEFENSE_OFFSET + 3 + 2*slot] = 0.0;
+					teamKeys[slot] = NONE;
+				}
+			}
+
+			x[SPEED_OFFSET] = speed_feature(gs);
+			encoded = true;
+		}
+
+		/** Returns whether [m] is the same as the moves last encoded */
+		private boolean sameMoves(Move[] m) {
+			if (m.length != moveCount)
+				return false;
+			for (int i = 0; i < moveCount; i++) {
+				if (m[i] != moves[i])
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Rewrites the effectiveness of every move against the j'th pokemon of the opponent
+		 * [p] (null if it hasn't been seen), if it changed or if [movesChanged]
+		 */
+		private void updateOpponent(int j, Pokemon p, boolean movesChanged) {
+			int key = (p == null ? NONE : (p.isAlive() ? key(p) : 0));
+			if (!movesChanged && key == opponentKeys[j])
+				return;
+			for (int i = 0; i < MAX_MOVES; i++) {
+				double e;
+				if (i >= moveCount)
+					e = 0.0;
+				// Assume neutral damage for unseen pokemon
+				else if (p == null)
+					e = 1.0;
+				else
+					e = effect(moves[i], p);
+				x[EFFECTIVENESS_OFFSET + MAX_OPPONENTS*i + j] = e;
+			}
+			opponentKeys[j] = key;
+		}
+
+		/**
+		 * Returns a key of the values of [p] that its features depend on (whether it is alive,
+		 * whether it has a major status, and its types). Pokemon with the same key have the
+		 * same features.
+		 */
+		private static int key(Pokemon p) {
+			return (p.isAlive() ? 1 : 0) | (p.hasMajorStatus() ? 2 : 0) 
+					| (p.types[0].ordinal() << 2) | (p.types[1].ordinal() << 7);
+		}
+	}
+
 	// Test the neural network using XOR function.
 	public static void main(String[] args) {
 		SelfPlay.main(null);
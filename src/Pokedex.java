@@ -2,6 +2,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,15 +13,90 @@ import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 public class Pokedex {
+	/**
+	 * Data shared by every pokemon of a species. Entries are created when the pokedex is
+	 * loaded and never change afterwards, so pokemon reference them rather than copying them.
+	 */
 	public static class PokedexEntry {
-		public String species;
-		public Type[] types;
-		public int[] baseStats; // [hp, atk, def, spc, spe]
-		public String essentialMove;
-		public String[] randomBattleMoves;
-		public String[] exclusiveMoves;
-		public String[] comboMoves;
-		public String tier;
+		/** Index of the entry in pokedex.json (see getEntry) */
+		private final int id;
+		private final String species;
+		private final Type[] types; // Always length 2, types[1] is NONE if single typed
+		private final int[] baseStats; // [hp, atk, def, spc, spe]
+		private final String essentialMove;
+		private final List<String> randomBattleMoves;
+		private final List<String> exclusiveMoves;
+		private final List<String> comboMoves;
+		private final String tier;
+		/** statsByLevel[level] is [hp, atk, def, spc, spe] of the species at [level] */
+		private final int[][] statsByLevel;
+		
+		private PokedexEntry(int id, String species, Type[] types, int[] baseStats, String essentialMove, 
+				List<String> randomBattleMoves, List<String> exclusiveMoves, List<String> comboMoves, String tier) {
+			this.id = id;
+			this.species = species;
+			this.types = types;
+			this.baseStats = baseStats;
+			this.essentialMove = essentialMove;
+			this.randomBattleMoves = Collections.unmodifiableList(new ArrayList<>(randomBattleMoves));
+			this.exclusiveMoves = Collections.unmodifiableList(new ArrayList<>(exclusiveMoves));
+			this.comboMoves = Collections.unmodifiableList(new ArrayList<>(comboMoves));
+			this.tier = tier;
+			
+			statsByLevel = new int[101][];
+			for (int level = 1; level <= 100; level++) {
+				int[] stats = new int[5];
+				stats[0] = (((2 * baseStats[0] + 30 + (255/4))*level)/100) + level + 10;
+				for (int i = 1; i < 5; i++) {
+					stats[i] = (((2 * baseStats[i] + 30 + (255/4))*level)/100) + 5;
+				}
+				statsByLevel[level] = stats;
+			}
+		}
+		
+		public int getId() {
+			return id;
+		}
+		
+		public String getSpecies() {
+			return species;
+		}
+		
+		/** Returns a new array of the types of the species (of length 2, the second is NONE if single typed) */
+		public Type[] getTypes() {
+			return types.clone();
+		}
+		
+		/** Returns base stat [i] of [hp, atk, def, spc, spe] */
+		public int getBaseStat(int i) {
+			return baseStats[i];
+		}
+		
+		/** Returns stat [i] of [hp, atk, def, spc, spe] of the species at [level] (1-100) */
+		public int getStat(int level, int i) {
+			return statsByLevel[level][i];
+		}
+		
+		/** Returns the move every random moveset of the species has, or null if there is none */
+		public String getEssentialMove() {
+			return essentialMove;
+		}
+		
+		public List<String> getRandomBattleMoves() {
+			return randomBattleMoves;
+		}
+		
+		public List<String> getExclusiveMoves() {
+			return exclusiveMoves;
+		}
+		
+		public List<String> getComboMoves() {
+			return comboMoves;
+		}
+		
+		public String getTier() {
+			return tier;
+		}
 		
 		public String toString() {
 			StringBuilder sb = new StringBuilder();
@@ -28,9 +104,9 @@ public class Pokedex {
 			sb.append("\n\t" + Arrays.toString(types));
 			sb.append("\n\t" + Arrays.toString(baseStats));
 			sb.append("\n\t" + essentialMove);
-			sb.append("\n\t" + Arrays.toString(randomBattleMoves));
-			sb.append("\n\t" + Arrays.toString(exclusiveMoves));
-			sb.append("\n\t" + Arrays.toString(comboMoves));
+			sb.append("\n\t" + randomBattleMoves);
+			sb.append("\n\t" + exclusiveMoves);
+			sb.append("\n\t" + comboMoves);
 			sb.append("\n\t" + tier);
 			return new String(sb);
 		}
@@ -38,12 +114,15 @@ public class Pokedex {
 	
 	private static Map<String, PokedexEntry> dex;
 	private static ArrayList<String> allSpecies;
+	/** entries.get(i) is the entry with id i */
+	private static ArrayList<PokedexEntry> entries;
 	
 	@SuppressWarnings("unchecked")
 	private static void loadPokedex() {
 		
 		dex = new HashMap<String, PokedexEntry>();
 		allSpecies = new ArrayList<String>();
+		entries = new ArrayList<PokedexEntry>();
 		
 		JSONArray jA;
 		try {
@@ -56,38 +135,34 @@ public class Pokedex {
 		
 		List<JSONObject> jPokemon = jA;
 		for(JSONObject p : jPokemon) {
-			PokedexEntry entry = new PokedexEntry();
-			
-			entry.species = (String)(p.get("species"));
-			entry.tier = ((String)(p.get("tier"))).toLowerCase();
+			String species = (String)(p.get("species"));
+			String tier = ((String)(p.get("tier"))).toLowerCase();
 			
 			Object em = p.get("essentialMove");
-			entry.essentialMove = em != null ? (String)(em) : null;
+			String essentialMove = em != null ? (String)(em) : null;
 			
 			List<String> rbm = (List<String>)(p.get("randomBattleMoves"));
-			entry.randomBattleMoves = rbm.toArray(new String[rbm.size()]);
-			
 			List<String> xm = (List<String>)(p.get("exclusiveMoves"));
-			entry.exclusiveMoves = xm != null ? xm.toArray(new String[xm.size()]) : new String[0];
-			
 			List<String> cm = (List<String>)(p.get("comboMoves"));
-			entry.comboMoves = cm != null ? cm.toArray(new String[cm.size()]) : new String[0];
 			
 			List<String> stringTypes = (List<String>)(p.get("types"));
-			entry.types = new Type[2];
-			entry.types[0] = Type.valueOf(stringTypes.get(0).toUpperCase());
-			entry.types[1] = stringTypes.size() > 1 ? Type.valueOf(stringTypes.get(1).toUpperCase()) : Type.NONE;
+			Type[] types = new Type[2];
+			types[0] = Type.valueOf(stringTypes.get(0).toUpperCase());
+			types[1] = stringTypes.size() > 1 ? Type.valueOf(stringTypes.get(1).toUpperCase()) : Type.NONE;
 			
 			JSONObject stats = (JSONObject)(p.get("baseStats"));
-			entry.baseStats = new int[5];
-			entry.baseStats[0] = (int)(long)(stats.get("hp"));
-			entry.baseStats[1] = (int)(long)(stats.get("atk"));
-			entry.baseStats[2] = (int)(long)(stats.get("def"));
-			entry.baseStats[3] = (int)(long)(stats.get("spa"));
-			entry.baseStats[4] = (int)(long)(stats.get("spe"));
+			int[] baseStats = new int[5];
+			baseStats[0] = (int)(long)(stats.get("hp"));
+			baseStats[1] = (int)(long)(stats.get("atk"));
+			baseStats[2] = (int)(long)(stats.get("def"));
+			baseStats[3] = (int)(long)(stats.get("spa"));
+			baseStats[4] = (int)(long)(stats.get("spe"));
 			
+			PokedexEntry entry = new PokedexEntry(entries.size(), species, types, baseStats, essentialMove, rbm, 
+					xm != null ? xm : Collections.<String>emptyList(), cm != null ? cm : Collections.<String>emptyList(), tier);
 			dex.put(entry.species, entry);
 			allSpecies.add(entry.species);
+			entries.add(entry);
 		}
 	}
 	
@@ -98,6 +173,22 @@ public class Pokedex {
 		return dex;
 	}
 	
+	/** Returns the entry with id [id] (0 to getSpeciesCount()-1) */
+	public static PokedexEntry getEntry(int id) {
+		if(dex == null) {
+			loadPokedex();
+		}
+		return entries.get(id);
+	}
+	
+	/** Returns the number of species, which is one more than the largest id */
+	public static int getSpeciesCount() {
+		if(dex == null) {
+			loadPokedex();
+		}
+		return entries.size();
+	}
+	
 	public static ArrayList<String> getAllSpecies() {
 		if(dex == null) {
 			loadPokedex();
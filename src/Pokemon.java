@@ -1,8 +1,9 @@
 import java.util.Arrays;
-import java.util.function.Function;
 
 public class Pokemon {
 	public String species;
+	/** Data shared by every pokemon of the species */
+	public Pokedex.PokedexEntry speciesData;
 	public Type[] types; // Always length 2, types[1] is NONE if single typed
 	public Move[] moves;
 	public int[] pp; /** pp[i] is the current pp of moves[i] **/
@@ -17,33 +18,53 @@ public class Pokemon {
 	
 	/* Class which reprsents all of a pokemon's possible status effects. */
 	public static class Status {
-		/* An array of length 7 containing the counter storing how many times
-		 * a particular statistic has been modified. The indices 0-4 represent
-		 * [hp, atk, def, spc, spe, acc, eva] respectively. A positive value [y] indicates a
-		 * modified statistic of [x(1 + 0.5y)] where [x] is the original stat
-		 * and a negative value [y] indicates a modified statistic [x/(1 + 0.5y)]. 
-		 * All values are initialized to 0. */
-		public int[] statMod;
-		/* Statistics which vary a pokemon's ability to move. All values are
-		 * initialized to false. */
-		public boolean bide, freeze, paralyze, burn, recharge, charge, poison;
-		/* Statistics which can vary in effect. [badly_poisoned] stores the
-		 * number of turns since being inflicted as damage increases for each 
-		 * successive turn. [sleep] will store the number of remaining turns
-		 * for which the current pokemon will be asleep for, and [substitute]
-		 * will hold the remaining [hp] of a dummy substitute used to tank 
-		 * the opponents attacks. All values are initialized to 0. */
-		public int badly_poisoned_counter, sleep_turns_left, confuse_turns_left, substitute_hp;
-		/* bide_turns_left is number of turns after which pokemon should unleash energy
-		 * or -1 if the pokemon is not biding
-		 * bide_damage is amount of damage done to it so far */
-		public int bide_turns_left, bide_damage;
-		/* Amount of physical damage taken in the current turn for Counter */
-		public int counter_damage;
-		/* [mimicIndex] is which index in the pokemon's moveslot mimic was originally
-		 * in before it got replaced, or -1 if it never got replaced
-		 * [mimicPP] is how much pp mimic had before it got replaced. */
-		public int mimicIndex, mimicPP;
+		/* Every status except transform is packed into two words, so that copying
+		 * a status is a couple of word copies. Each status is read and written 
+		 * through the accessors below.
+		 * 
+		 * [conditions] holds (from the lowest bit)
+		 * - the flags [bide, freeze, paralyze, burn, recharge, charge, poison], one bit each,
+		 *   which vary a pokemon's ability to move
+		 * - [sleep_turns_left], the number of remaining turns for which the pokemon 
+		 *   will be asleep for (4 bits)
+		 * - [confuse_turns_left], the number of remaining turns of confusion (4 bits)
+		 * - [bide_turns_left], the number of turns after which the pokemon should 
+		 *   unleash energy (4 bits)
+		 * - [badly_poisoned_counter], the number of turns since being badly poisoned,
+		 *   as damage increases for each successive turn (8 bits)
+		 * - the stat modifications of [hp, atk, def, spc, spe, acc, eva] (4 bits each, 
+		 *   from -6 to 6). A positive value [y] indicates a modified statistic of [x(1 + 0.5y)]
+		 *   where [x] is the original stat and a negative value [y] indicates a modified 
+		 *   statistic [x/(1 - 0.5y)] (see applyStage).
+		 * 
+		 * [counters] holds (from the lowest bit)
+		 * - [substitute_hp], the remaining [hp] of a dummy substitute used to tank 
+		 *   the opponents attacks (16 bits)
+		 * - [bide_damage], the amount of damage done to the pokemon while biding (16 bits)
+		 * - [counter_damage], the amount of physical damage taken in the current turn 
+		 *   for Counter (16 bits)
+		 * - [mimicIndex] + 1, where [mimicIndex] is which index in the pokemon's moveslot mimic 
+		 *   was originally in before it got replaced, or -1 if it never got replaced (4 bits)
+		 * - [mimicPP], how much pp mimic had before it got replaced (8 bits)
+		 * 
+		 * All values are initialized to 0 or false, except [mimicIndex] which is -1. 
+		 * Counters of 8 or 16 bits are clamped to the largest value which fits, which
+		 * is never reached in a real battle. */
+		private long conditions, counters;
+		
+		/** Number of stats with a stat modification, indexed as in Stat.getIndex() */
+		public static final int STAT_MOD_COUNT = 7;
+		
+		private static final long BIDE = 1, FREEZE = 2, PARALYZE = 4, BURN = 8, RECHARGE = 16, CHARGE = 32, POISON = 64;
+		private static final int SLEEP_SHIFT = 8, CONFUSE_SHIFT = 12, BIDE_TURNS_SHIFT = 16, BADLY_POISONED_SHIFT = 20, 
+				STAT_MOD_SHIFT = 28;
+		private static final int SUBSTITUTE_SHIFT = 0, BIDE_DAMAGE_SHIFT = 16, COUNTER_DAMAGE_SHIFT = 32, 
+				MIMIC_INDEX_SHIFT = 48, MIMIC_PP_SHIFT = 52;
+		private static final long MASK_4 = 0xF, MASK_8 = 0xFF, MASK_16 = 0xFFFF;
+		/** Bits of [conditions] of which at least one is set if the pokemon has a major status */
+		private static final long MAJOR_STATUS = FREEZE | PARALYZE | BURN | POISON 
+				| (MASK_4 << SLEEP_SHIFT) | (MASK_8 << BADLY_POISONED_SHIFT);
+		
 		/* [transform] will store the active transformed pokemon. If [transform]
 		 * is unknown or never used, value will be [null]. TransformedFrom is 
 		 * a reference to the original pokemon object before transforming. */
@@ -51,35 +72,141 @@ public class Pokemon {
 		public Pokemon transformedFrom;
 		
 		public Status() {
-			statMod = new int[7];
-			mimicIndex = -1;
+			setMimicIndex(-1);
+		}
+		
+		/** Copies every field of [s] except [transformed] into this status */
+		public void copyFrom(Status s) {
+			conditions = s.conditions;
+			counters = s.counters;
+			transformedFrom = s.transformedFrom;
+		}
+		
+		/** Returns whether [s] has the same statuses as this one, not considering transform */
+		public boolean sameAs(Status s) {
+			return conditions == s.conditions && counters == s.counters;
+		}
+		
+		/** Returns word [i] (0 or 1) of the packed statuses, e.g. to store them elsewhere */
+		public long getWord(int i) {
+			return i == 0 ? conditions : counters;
+		}
+		
+		/** Sets word [i] (0 or 1) of the packed statuses to a value returned by getWord(i) */
+		public void setWord(int i, long word) {
+			if (i == 0)
+				conditions = word;
+			else
+				counters = word;
+		}
+		
+		/** Returns [word] with the [mask] bits at [shift] set to [value] */
+		private static long with(long word, int shift, long mask, long value) {
+			return (word & ~(mask << shift)) | ((value & mask) << shift);
+		}
+		
+		private static long with(long word, long flag, boolean value) {
+			return value ? word | flag : word & ~flag;
+		}
+		
+		public boolean hasMajorStatus() {
+			return (conditions & MAJOR_STATUS) != 0;
+		}
+		
+		public boolean isBide() { return (conditions & BIDE) != 0; }
+		public boolean isFreeze() { return (conditions & FREEZE) != 0; }
+		public boolean isParalyze() { return (conditions & PARALYZE) != 0; }
+		public boolean isBurn() { return (conditions & BURN) != 0; }
+		public boolean isRecharge() { return (conditions & RECHARGE) != 0; }
+		public boolean isCharge() { return (conditions & CHARGE) != 0; }
+		public boolean isPoison() { return (conditions & POISON) != 0; }
+		
+		public void setBide(boolean b) { conditions = with(conditions, BIDE, b); }
+		public void setFreeze(boolean b) { conditions = with(conditions, FREEZE, b); }
+		public void setParalyze(boolean b) { conditions = with(conditions, PARALYZE, b); }
+		public void setBurn(boolean b) { conditions = with(conditions, BURN, b); }
+		public void setRecharge(boolean b) { conditions = with(conditions, RECHARGE, b); }
+		public void setCharge(boolean b) { conditions = with(conditions, CHARGE, b); }
+		public void setPoison(boolean b) { conditions = with(conditions, POISON, b); }
+		
+		public int getSleepTurnsLeft() { return (int)((conditions >>> SLEEP_SHIFT) & MASK_4); }
+		public int getConfuseTurnsLeft() { return (int)((conditions >>> CONFUSE_SHIFT) & MASK_4); }
+		public int getBideTurnsLeft() { return (int)((conditions >>> BIDE_TURNS_SHIFT) & MASK_4); }
+		public int getBadlyPoisonedCounter() { return (int)((conditions >>> BADLY_POISONED_SHIFT) & MASK_8); }
+		
+		public void setSleepTurnsLeft(int n) { conditions = with(conditions, SLEEP_SHIFT, MASK_4, n); }
+		public void setConfuseTurnsLeft(int n) { conditions = with(conditions, CONFUSE_SHIFT, MASK_4, n); }
+		public void setBideTurnsLeft(int n) { conditions = with(conditions, BIDE_TURNS_SHIFT, MASK_4, n); }
+		public void setBadlyPoisonedCounter(int n) { conditions = with(conditions, BADLY_POISONED_SHIFT, MASK_8, Math.min(n, MASK_8)); }
+		
+		/** Returns the stat modification of the stat with index [i] (see Stat.getIndex()) */
+		public int getStatMod(int i) {
+			// Shift the 4 bits to the top of the word and back to sign-extend them
+			return (int)((conditions << (60 - STAT_MOD_SHIFT - 4*i)) >> 60);
+		}
+		
+		/** Sets the stat modification of the stat with index [i] (see Stat.getIndex()) to [stage] (-6 to 6) */
+		public void setStatMod(int i, int stage) {
+			conditions = with(conditions, STAT_MOD_SHIFT + 4*i, MASK_4, stage);
+		}
+		
+		/** Sets every stat modification to the one of [s] */
+		public void copyStatModsFrom(Status s) {
+			long mask = ((1L << (4*STAT_MOD_COUNT)) - 1) << STAT_MOD_SHIFT;
+			conditions = (conditions & ~mask) | (s.conditions & mask);
 		}
 		
+		/** Sets every stat modification to 0 */
+		public void clearStatMods() {
+			conditions &= ~(((1L << (4*STAT_MOD_COUNT)) - 1) << STAT_MOD_SHIFT);
+		}
+		
+		/** Returns a new array of the stat modifications, indexed as in Stat.getIndex() */
+		public int[] getStatMods() {
+			int[] statMods = new int[STAT_MOD_COUNT];
+			for (int i = 0; i < STAT_MOD_COUNT; i++) {
+				statMods[i] = getStatMod(i);
+			}
+			return statMods;
+		}
+		
+		public int getSubstituteHp() { return (int)((counters >>> SUBSTITUTE_SHIFT) & MASK_16); }
+		public int getBideDamage() { return (int)((counters >>> BIDE_DAMAGE_SHIFT) & MASK_16); }
+		public int getCounterDamage() { return (int)((counters >>> COUNTER_DAMAGE_SHIFT) & MASK_16); }
+		public int getMimicIndex() { return (int)((counters >>> MIMIC_INDEX_SHIFT) & MASK_4) - 1; }
+		public int getMimicPP() { return (int)((counters >>> MIMIC_PP_SHIFT) & MASK_8); }
+		
+		public void setSubstituteHp(int n) { counters = with(counters, SUBSTITUTE_SHIFT, MASK_16, Math.min(n, MASK_16)); }
+		public void setBideDamage(int n) { counters = with(counters, BIDE_DAMAGE_SHIFT, MASK_16, Math.min(n, MASK_16)); }
+		public void setCounterDamage(int n) { counters = with(counters, COUNTER_DAMAGE_SHIFT, MASK_16, Math.min(n, MASK_16)); }
+		public void setMimicIndex(int i) { counters = with(counters, MIMIC_INDEX_SHIFT, MASK_4, i + 1); }
+		public void setMimicPP(int n) { counters = with(counters, MIMIC_PP_SHIFT, MASK_8, Math.min(n, MASK_8)); }
+		
 		public String toString() {
 			StringBuilder sb = new StringBuilder();
-			sb.append(Arrays.toString(statMod));
-			if(freeze)
+			sb.append(Arrays.toString(getStatMods()));
+			if(isFreeze())
 				sb.append(", Frozen");
-			if(paralyze)
+			if(isParalyze())
 				sb.append(", Paralyzed");
-			if(burn)
+			if(isBurn())
 				sb.append(", Burned");
-			if(recharge)
+			if(isRecharge())
 				sb.append(", Recharge");
-			if(charge)
+			if(isCharge())
 				sb.append(", Charge");
-			if(poison)
+			if(isPoison())
 				sb.append(", Poison");
-			if(badly_poisoned_counter > 0)
-				sb.append(", Badly Poison (" + badly_poisoned_counter + ")");
-			if(sleep_turns_left > 0)
-				sb.append(", Sleep (" + sleep_turns_left + ")");
-			if(confuse_turns_left > 0)
-				sb.append(", Confused (" + confuse_turns_left + ")");
-			if(substitute_hp > 0)
-				sb.append(", Substitute (" + substitute_hp + ")");
-			if(bide_turns_left > 0)
-				sb.append(", Bide (" + bide_turns_left + ", " + bide_damage + ")");
+			if(getBadlyPoisonedCounter() > 0)
+				sb.append(", Badly Poison (" + getBadlyPoisonedCounter() + ")");
+			if(getSleepTurnsLeft() > 0)
+				sb.append(", Sleep (" + getSleepTurnsLeft() + ")");
+			if(getConfuseTurnsLeft() > 0)
+				sb.append(", Confused (" + getConfuseTurnsLeft() + ")");
+			if(getSubstituteHp() > 0)
+				sb.append(", Substitute (" + getSubstituteHp() + ")");
+			if(getBideTurnsLeft() > 0)
+				sb.append(", Bide (" + getBideTurnsLeft() + ", " + getBideDamage() + ")");
 			if(transformed != null)
 				sb.append(", Tranformed to: " + transformed.species + " (" + (transformed.status.transformed != null ? transformed.status.transformed.species : "null") + ")");
 			return new String(sb);
@@ -119,27 +246,30 @@ public class Pokemon {
 			this.moves[i] = Move.getMove(moves[i]);
 		}
 		
-		Pokedex.PokedexEntry entry = Pokedex.getDex().get(species);
-		this.types = entry.types;
+		this.speciesData = Pokedex.getDex().get(species);
+		this.types = speciesData.getTypes();
 		
 		this.pp = new int[this.moves.length];
 		for(int i = 0; i < this.moves.length; i++) {
 			pp[i] = this.moves[i] != null ? this.moves[i].maxPP : 0;
 		}
 		
-		this.maxHp = (((2 * entry.baseStats[0] + 30 + (255/4))*level)/100) + level + 10;
+		this.maxHp = speciesData.getStat(level, 0);
 		this.currHp = this.maxHp;
-		
-		Function<Integer, Integer> computeStat = (stat -> (((2 * stat + 30 + (255/4))*level)/100) + 5);
-		this.atk = computeStat.apply(entry.baseStats[1]);
-		this.def = computeStat.apply(entry.baseStats[2]);
-		this.spc = computeStat.apply(entry.baseStats[3]);
-		this.spe = computeStat.apply(entry.baseStats[4]);
+		this.atk = speciesData.getStat(level, 1);
+		this.def = speciesData.getStat(level, 2);
+		this.spc = speciesData.getStat(level, 3);
+		this.spe = speciesData.getStat(level, 4);
 		
 		this.level = level;
 		status = new Status();
 	}
 	
+	/** Constructs an empty pokemon, to be filled by copyFrom */
+	private Pokemon() {
+		status = new Status();
+	}
+	
 	/** Gives the name, hp, and moveset of the pokemon. */
 	public String print() {
 		String ret = species + ": " + currHp + "/" + maxHp + " (";
@@ -155,47 +285,49 @@ public class Pokemon {
 	 * Creates a deep copy of the Pokemon object (with the exception of the Move objects).
 	 */
 	public Pokemon clone() {
-		String[] movenames = new String[this.moves.length];
-		for (int i = 0; i < movenames.length; i++) {
-			if (this.moves[i] != null) {
-				movenames[i] = this.moves[i].name;
-			}
-		}
-		Pokemon ret = new Pokemon(this.species, movenames, this.level);
-		ret.currHp = this.currHp;
-		// copy the pp-values into the deep copy
-		for (int i = 0; i < ret.pp.length; i++) {
-			ret.pp[i] = this.pp[i];
-		}
-		// copy the stat modifications
-		for (int i = 0; i < ret.status.statMod.length; i++) {
-			ret.status.statMod[i] = this.status.statMod[i];
+		Pokemon ret = new Pokemon();
+		ret.copyFrom(this);
+		return ret;
+	}
+	
+	/**
+	 * Copies the battle state of [p] into this pokemon, reusing its arrays when possible, 
+	 * so that it becomes a deep copy of [p] like p.clone() (the species data, i.e. types,
+	 * and the Move objects are shared). This pokemon must not share its status with
+	 * another pokemon, which is the case for copies.
+	 */
+	public void copyFrom(Pokemon p) {
+		species = p.species;
+		speciesData = p.speciesData;
+		types = p.types;
+		level = p.level;
+		maxHp = p.maxHp;
+		atk = p.atk;
+		def = p.def;
+		spc = p.spc;
+		spe = p.spe;
+		currHp = p.currHp;
+		lastAttacker = p.lastAttacker;
+		lastMoveUsed = p.lastMoveUsed;
+		
+		if (moves == null || moves.length != p.moves.length) {
+			moves = new Move[p.moves.length];
+			pp = new int[p.pp.length];
 		}
-		// copy status effects minus transform
-		ret.status.badly_poisoned_counter = this.status.badly_poisoned_counter;
-		ret.status.bide = this.status.bide;
-		ret.status.bide_damage = this.status.bide_damage;
-		ret.status.bide_turns_left = this.status.bide_turns_left;
-		ret.status.burn = this.status.burn;
-		ret.status.charge = this.status.charge;
-		ret.status.confuse_turns_left = this.status.confuse_turns_left;
-		ret.status.counter_damage = this.status.counter_damage;
-		ret.status.freeze = this.status.freeze;
-		ret.status.mimicIndex = this.status.mimicIndex;
-		ret.status.mimicPP = this.status.mimicPP;
-		ret.status.paralyze = this.status.paralyze;
-		ret.status.poison = this.status.poison;
-		ret.status.recharge = this.status.recharge;
-		ret.status.sleep_turns_left = this.status.sleep_turns_left;
-		ret.status.substitute_hp = this.status.substitute_hp;
-		ret.status.transformedFrom = this.status.transformedFrom;
+		System.arraycopy(p.moves, 0, moves, 0, moves.length);
+		System.arraycopy(p.pp, 0, pp, 0, pp.length);
 		
+		status.copyFrom(p.status);
 		// if the pokemon is transformed, make a copy of the transformed pokemon
-		if (this.status.transformed != null && this.status.transformed != this) {
-			ret.status.transformed = this.status.transformed.clone();
+		if (p.status.transformed != null && p.status.transformed != p) {
+			if (status.transformed == null || status.transformed == this)
+				status.transformed = p.status.transformed.clone();
+			else
+				status.transformed.copyFrom(p.status.transformed);
+		}
+		else {
+			status.transformed = null;
 		}
-		
-		return ret;
 	}
 	
 	/**
@@ -215,8 +347,7 @@ public class Pokemon {
 	 * major status cannot be assigned
 	 */
 	public boolean hasMajorStatus() {
-		return (this.status.freeze || this.status.paralyze || this.status.burn || this.status.poison || 
-				(this.status.badly_poisoned_counter > 0) || (this.status.sleep_turns_left > 0));
+		return this.status.hasMajorStatus();
 	}
 	
 	/**
@@ -230,45 +361,45 @@ public class Pokemon {
 			return;
 		switch (s) {
 			case FREEZE:
-				if(!this.hasMajorStatus() && this.status.substitute_hp == 0) {
-					this.status.freeze = true;
-					Simulator.addMessage(this.species + " was frozen");
+				if(!this.hasMajorStatus() && this.status.getSubstituteHp() == 0) {
+					this.status.setFreeze(true);
+					BattleEvents.statusApplied(this.species, s, 0);
 				}	
 			break;
 			case PARALYZE:
-				if(!this.hasMajorStatus() && this.status.substitute_hp == 0) {
-					this.status.paralyze = true;
-					Simulator.addMessage(this.species + " was paralyzed");
+				if(!this.hasMajorStatus() && this.status.getSubstituteHp() == 0) {
+					this.status.setParalyze(true);
+					BattleEvents.statusApplied(this.species, s, 0);
 				}	
 			break;
 			case CONFUSE:
-				if(this.status.confuse_turns_left == 0 && this.status.substitute_hp == 0) {
-					this.status.confuse_turns_left = n;
-					Simulator.addMessage(this.species + " was confused (" + n + ")");
+				if(this.status.getConfuseTurnsLeft() == 0 && this.status.getSubstituteHp() == 0) {
+					this.status.setConfuseTurnsLeft(n);
+					BattleEvents.statusApplied(this.species, s, n);
 				}	
 			break;
 			case BURN:
-				if(!this.hasMajorStatus() && this.status.substitute_hp == 0) {
-					this.status.burn = true;
-					Simulator.addMessage(this.species + " was burn");
+				if(!this.hasMajorStatus() && this.status.getSubstituteHp() == 0) {
+					this.status.setBurn(true);
+					BattleEvents.statusApplied(this.species, s, 0);
 				}	
 			break;
 			case POISON:
-				if(!this.hasMajorStatus() && this.status.substitute_hp == 0 && this.types[0] != Type.POISON && this.types[1] != Type.POISON) {
-					this.status.poison = true;
-					Simulator.addMessage(this.species + " was poisoned");
+				if(!this.hasMajorStatus() && this.status.getSubstituteHp() == 0 && this.types[0] != Type.POISON && this.types[1] != Type.POISON) {
+					this.status.setPoison(true);
+					BattleEvents.statusApplied(this.species, s, 0);
 				}	
 			break;
 			case BADLY_POISON: 
-				if(!this.hasMajorStatus() && this.status.substitute_hp == 0 && this.types[0] != Type.POISON && this.types[1] != Type.POISON) {
-					this.status.badly_poisoned_counter = 1;
-					Simulator.addMessage(this.species + " was badly poisoned");
+				if(!this.hasMajorStatus() && this.status.getSubstituteHp() == 0 && this.types[0] != Type.POISON && this.types[1] != Type.POISON) {
+					this.status.setBadlyPoisonedCounter(1);
+					BattleEvents.statusApplied(this.species, s, 0);
 				}	
 			break;
 			case SLEEP:
-				if(!this.hasMajorStatus() && this.status.substitute_hp == 0) {
-					this.status.sleep_turns_left = n;
-					Simulator.addMessage(this.species + " fell asleep (" + this.status.sleep_turns_left + ")");
+				if(!this.hasMajorStatus() && this.status.getSubstituteHp() == 0) {
+					this.status.setSleepTurnsLeft(n);
+					BattleEvents.statusApplied(this.species, s, n);
 				}	
 			break;
 		}
@@ -302,11 +433,22 @@ public class Pokemon {
 	public void statMod(Stat s, int level) {
 		if(!this.isAlive())
 			return;
-		this.status.statMod[s.getIndex()] = Math.max(Math.min(this.status.statMod[s.getIndex()] + level, 6), -6);
-		Simulator.addMessage(this.species + "'s stats changed: " + Arrays.toString(this.status.statMod));
+		this.status.setStatMod(s.getIndex(), Math.max(Math.min(this.status.getStatMod(s.getIndex()) + level, 6), -6));
+		BattleEvents.statChanged(this.species, s, level, this.status.getStatMod(s.getIndex()));
 	}
 	
 	
+	/* The multiplier of a stat modified by [y] stages (-6 to 6) is
+	 * STAGE_NUMERATORS[y + 6] / STAGE_DENOMINATORS[y + 6], i.e. (1 + 0.5y)
+	 * for positive [y] and 1/(1 - 0.5y) for negative [y]. */
+	private static final int[] STAGE_NUMERATORS = {2, 2, 2, 2, 2, 2, 2, 3, 4, 5, 6, 7, 8};
+	private static final int[] STAGE_DENOMINATORS = {8, 7, 6, 5, 4, 3, 2, 2, 2, 2, 2, 2, 2};
+	
+	/** Returns [value] modified by [stage] stages (-6 to 6), rounded down */
+	public static int applyStage(int value, int stage) {
+		return value * STAGE_NUMERATORS[stage + 6] / STAGE_DENOMINATORS[stage + 6];
+	}
+	
 	/**
 	 * Returns the value of the specified stat for this pokemon
 	 * after applying stat modifications and paralysis speed drop
@@ -318,7 +460,7 @@ public class Pokemon {
 		int i = 0;
 		switch (s) {
 			case ATK:
-				stat = this.atk / (this.status.burn ? 2 : 1);
+				stat = this.atk / (this.status.isBurn() ? 2 : 1);
 				i = 1;
 			break;
 			case DEF:
@@ -330,7 +472,7 @@ public class Pokemon {
 				i = 3;
 			break;
 			case SPE:
-				stat = this.spe / (this.status.paralyze ? 4 : 1);
+				stat = this.spe / (this.status.isParalyze() ? 4 : 1);
 				i = 4;
 			break;
 			case HP:
@@ -339,7 +481,7 @@ public class Pokemon {
 				return 0;
 		}
 		
-		return (int)(stat * Math.pow(1 + 0.5*this.status.statMod[i], this.status.statMod[i] > 0 ? 1 : -1));
+		return applyStage(stat, this.status.getStatMod(i));
 		
 	}
 	
@@ -357,13 +499,13 @@ public class Pokemon {
 		this.status.transformed.currHp = this.currHp;
 		this.status.transformed.maxHp = this.maxHp;
 		this.status.transformed.status = this.status;
-		this.status.transformed.status.statMod = Arrays.copyOf(p.status.statMod, p.status.statMod.length);
+		this.status.transformed.status.copyStatModsFrom(p.status);
 		for(int i = 0; i < this.status.transformed.pp.length; i++)
 			this.status.transformed.pp[i] = 5;
 		
 		this.status.transformedFrom = this;
 		
-		Simulator.addMessage(this.species + " transformed into " + p.species);
+		BattleEvents.emit(BattleEvents.Type.TRANSFORM, this.species, p.species);
 	}
 	
 	
@@ -375,10 +517,10 @@ public class Pokemon {
 	 */
 	public void resetUponSwitch() {
 		
-		this.status.confuse_turns_left = 0;
-		this.status.substitute_hp = 0;
-		this.status.badly_poisoned_counter = Math.min(this.status.badly_poisoned_counter, 1);
-		this.status.counter_damage = 0;
+		this.status.setConfuseTurnsLeft(0);
+		this.status.setSubstituteHp(0);
+		this.status.setBadlyPoisonedCounter(Math.min(this.status.getBadlyPoisonedCounter(), 1));
+		this.status.setCounterDamage(0);
 		
 		// Clear Transform
 		if(this.status.transformed != null) {
@@ -389,15 +531,13 @@ public class Pokemon {
 		
 		
 		// Clear mimic
-		if(this.status.mimicIndex != -1) {
-			this.moves[this.status.mimicIndex] = Move.getMove("mimic");
-			this.pp[this.status.mimicIndex] = this.status.mimicPP;
-			this.status.mimicIndex = -1;
+		if(this.status.getMimicIndex() != -1) {
+			this.moves[this.status.getMimicIndex()] = Move.getMove("mimic");
+			this.pp[this.status.getMimicIndex()] = this.status.getMimicPP();
+			this.status.setMimicIndex(-1);
 		}
 		
-		for(int i = 0; i < this.status.statMod.length; i++) {
-			this.status.statMod[i] = 0;
-		}
+		this.status.clearStatMods();
 		
 		lastMoveUsed = null;
 		lastAttacker = null;
@@ -6,7 +6,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Scanner;
@@ -210,7 +210,7 @@ public class Replay {
 		// Shuffle each Pokemon's move list and assign PP
 		for(Pokemon p : playerPokemonMap.values()) {
 			for(int j = 3; j > 0; j--) {
-				int index = (int)(Math.random()*(j+1));
+				int index = BattleRandom.nextInt(j+1);
 				Move temp = p.moves[index];
 				p.moves[index] = p.moves[j];
 				p.moves[j] = temp;
@@ -247,7 +247,7 @@ public class Replay {
 		i += 3;
 		
 		int numTurns = numTurns(lines);
-		turnNum = (int)(numTurns * Math.random() + 1);
+		turnNum = (int)(numTurns * BattleRandom.nextDouble() + 1);
 		int currTurn = 1;
 		
 		/*
@@ -285,7 +285,7 @@ public class Replay {
 						}
 						if(!foundPokemon) {
 							Pokemon p = new Pokemon(rsa.species, new String[4], rsa.level);
-							state.p2_pokemon.put(p, new HashSet<>());
+							state.p2_pokemon.put(p, new LinkedHashSet<>());
 							state.p2_active = p;
 						}
 					}
@@ -337,22 +337,22 @@ public class Replay {
 					String status = lines[i].substring(thirdBarIndex+1, fourthBarIndex);
 					
 					if(status.equals("frz")) {
-						targetPokemon.status.freeze = true;
+						targetPokemon.status.setFreeze(true);
 					}
 					else if(status.equals("par")) {
-						targetPokemon.status.paralyze = true;
+						targetPokemon.status.setParalyze(true);
 					}
 					else if(status.equals("psn")) {
-						targetPokemon.status.poison = true;
+						targetPokemon.status.setPoison(true);
 					}
 					else if(status.equals("brn")) {
-						targetPokemon.status.burn = true;
+						targetPokemon.status.setBurn(true);
 					}
 					else if(status.equals("tox")) {
-						targetPokemon.status.badly_poisoned_counter = 1;
+						targetPokemon.status.setBadlyPoisonedCounter(1);
 					}
 					else if(status.equals("slp")) {
-						targetPokemon.status.sleep_turns_left = 3; // guess how long sleep will be because we don't know upfront
+						targetPokemon.status.setSleepTurnsLeft(3); // guess how long sleep will be because we don't know upfront
 					}
 				}
 				else if (actionCategory.equals("-curestatus")) {
@@ -367,22 +367,22 @@ public class Replay {
 					String status = lines[i].substring(thirdBarIndex+1, fourthBarIndex);
 					
 					if(status.equals("frz")) {
-						targetPokemon.status.freeze = false;
+						targetPokemon.status.setFreeze(false);
 					}
 					else if(status.equals("par")) {
-						targetPokemon.status.paralyze = false;
+						targetPokemon.status.setParalyze(false);
 					}
 					else if(status.equals("psn")) {
-						targetPokemon.status.poison = false;
+						targetPokemon.status.setPoison(false);
 					}
 					else if(status.equals("brn")) {
-						targetPokemon.status.burn = false;
+						targetPokemon.status.setBurn(false);
 					}
 					else if(status.equals("tox")) {
-						targetPokemon.status.badly_poisoned_counter = 0;
+						targetPokemon.status.setBadlyPoisonedCounter(0);
 					}
 					else if(status.equals("slp")) {
-						targetPokemon.status.sleep_turns_left = 0;
+						targetPokemon.status.setSleepTurnsLeft(0);
 					}
 				}
 				else if (actionCategory.equals("faint")) {
@@ -414,7 +414,7 @@ public class Replay {
 					if(whatIsStarting.equals("confusion")) {
 						boolean player = (lines[i].charAt(secondBarIndex + 2) == '1');
 						Pokemon targetPokemon = (player == this.player) ? state.p1_team.activePokemon : state.p2_active;
-						targetPokemon.status.confuse_turns_left = 2; // we don't know how long it will last, approximate as 2		
+						targetPokemon.status.setConfuseTurnsLeft(2); // we don't know how long it will last, approximate as 2		
 					}
 				}
 				else if (actionCategory.equals("-end")) {
@@ -422,7 +422,7 @@ public class Replay {
 					if(whatIsEnding.equals("confusion")) {
 						boolean player = (lines[i].charAt(secondBarIndex + 2) == '1');
 						Pokemon targetPokemon = (player == this.player) ? state.p1_team.activePokemon : state.p2_active;
-						targetPokemon.status.confuse_turns_left = 0;
+						targetPokemon.status.setConfuseTurnsLeft(0);
 					}
 				}
 			}
@@ -552,9 +552,9 @@ public class Replay {
 		
 		for (int i = 0; i < 5; i++) { // print out the first 5 to check
 			System.out.println("nn1 Ouput: ");
-			nn.forward_prop(NeuralNet.input(r[i].state));
-			for (int j = 0; j < nn.nn.get(nn.LAYERS).length; j++) {
-				System.out.println(nn.nn.get(nn.LAYERS)[j].value + " ");
+			nn.forward_prop(r[i].state);
+			for (int j = 0; j < nn.OUTPUT; j++) {
+				System.out.println(nn.output()[j] + " ");
 			}
 			System.out.print("Expected: ");
 			System.out.println(r[i].action + "\n\n");
@@ -578,13 +578,13 @@ public class Replay {
 		
 		System.out.println("Five Randomly Chosen Replays:\n");
 		for(int i = 0; i < 5; i++) {
-			int index = (int)(Math.random()*500 + 500);
+			int index = BattleRandom.nextInt(500) + 500;
 			if(r[i].action != -1) {
-				nn.forward_prop(NeuralNet.input(r[i].state));
+				nn.forward_prop(r[i].state);
 				System.out.println(index + ": ");
 				System.out.println("\tNeural Network Output Layer:");
-				for (int j = 0; j < nn.nn.get(nn.LAYERS).length; j++) {
-					System.out.println("\t\t[" + j + "]: "+ nn.nn.get(nn.LAYERS)[j].value + " ");
+				for (int j = 0; j < nn.OUTPUT; j++) {
+					System.out.println("\t\t[" + j + "]: "+ nn.output()[j] + " ");
 				}
 				System.out.println("\tExpected: " + r[i].action);
 			}
@@ -616,7 +616,7 @@ public class Replay {
 		
 		for(int i = 0; i < 500; i++) {
 			if(r[i].action != -1) {
-				nn.forward_prop(NeuralNet.input(r[i].state));
+				nn.forward_prop(r[i].state);
 				// actions are stored as {action number, action value}
 				// lower value actions have higher priority
 				PriorityQueue<double[]> pq = new PriorityQueue<double[]>(
@@ -628,8 +628,8 @@ public class Replay {
 						}
 					}
 				);
-				for (int j = 0; j < nn.nn.get(nn.LAYERS).length; j++) {
-					pq.add(new double[] {j, nn.nn.get(nn.LAYERS)[j].value});
+				for (int j = 0; j < nn.OUTPUT; j++) {
+					pq.add(new double[] {j, nn.output()[j]});
 					while(pq.size() > 3) {
 						pq.poll();
 					}
@@ -672,6 +672,25 @@ public class Replay {
 		
 	}
 	
+	/**
+	 * Return the states of replays/[0 to count-1].html, skipping
+	 * the replays which have not been downloaded
+	 */
+	public static List<GameState> loadSavedStates(int count) {
+		return loadSavedStates(0, count);
+	}
+	
+	/** Same as loadSavedStates(count), for the replays numbered [from] to [to]-1 */
+	public static List<GameState> loadSavedStates(int from, int to) {
+		List<GameState> states = new ArrayList<>();
+		for(int i = from; i < to; i++) {
+			if(new File("replays/" + i + ".html").exists()) {
+				states.add(new Replay(i).state);
+			}
+		}
+		return states;
+	}
+	
 	public static void main(String[] args) {
 		System.out.println("Starting neural net training.");
 		trainPolicyNetwork(2, 30000, 0.2, 5, 500); // train only the first 500 samples
@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.SplittableRandom;
 
 public class SelfPlay {
 	
@@ -20,6 +21,12 @@ public class SelfPlay {
 	 */
 	private static List<List<Double>> replay;
 	
+	/** 
+	 * Search budget for each move during self-play, which stops searching early once 
+	 * the best move is decided
+	 */
+	private static final MCTS.SearchBudget SELF_PLAY_BUDGET = MCTS.SearchBudget.adaptive(MCTS.SIMULATION_TIME_LIMIT_SECONDS*1000L);
+	
 	/** 
 	 * Runs a simulation between p1 and player p2. Returns 1 if p1
 	 * is the winner and 0 otherwise. 
@@ -29,6 +36,25 @@ public class SelfPlay {
 	 * irrationally. However, such a case is rare so it is ignored.
 	 */
 	public static int run(NeuralNet p1, NeuralNet p2) {
+		return run(p1, p2, BattleRandom.split());
+	}
+	
+	/**
+	 * Same as run(p1, p2), but draws every random number of the game (the teams,
+	 * the battle and both searches) from [random], so that a game can be replayed
+	 * by passing a generator created with the same seed
+	 */
+	public static int run(NeuralNet p1, NeuralNet p2, SplittableRandom random) {
+		SplittableRandom previousRandom = BattleRandom.bind(random);
+		try {
+			return play(p1, p2);
+		}
+		finally {
+			BattleRandom.bind(previousRandom);
+		}
+	}
+	
+	private static int play(NeuralNet p1, NeuralNet p2) {
 		// reset replay to begin a new game
 		replay = new ArrayList<>();
 		
@@ -38,14 +64,18 @@ public class SelfPlay {
 		// gs1 is the gamestate from player one's perspective, gs2 from player twos' persepctive
 		GameState gs1 = new GameState(t1, t2.activePokemon);
 		GameState gs2 = new GameState(t2, t1.activePokemon);
-		
+		// Each player's search keeps its tree from one turn to the next
+		MCTS.Session s1 = new MCTS.Session(p1, null);
+		MCTS.Session s2 = new MCTS.Session(p2, null);
 		
 		while(t1.hasAlive() && t2.hasAlive()) {
 			replay.add(NeuralNet.input(gs1));
 			
 			// Pick a move based for each player
-			Simulator.Action p1Action = MCTS.chooseMove(gs1, p1, null);
-			Simulator.Action p2Action = MCTS.chooseMove(gs2, p2, null);
+			Simulator.Action p1Action = s1.chooseMove(gs1, SELF_PLAY_BUDGET);
+			Simulator.Action p2Action = s2.chooseMove(gs2, SELF_PLAY_BUDGET);
+			s1.observe(p1Action, p2Action);
+			s2.observe(p2Action, p1Action);
 			
 			// Execute the action
 			Simulator.executeTurn(p1Action, p2Action, t1, t2);
@@ -108,7 +138,7 @@ public class SelfPlay {
 	 * is a valid replay populated by calling run.
 	 */
 	private static List<Double> pick() {
-		return replay.get((int)(replay.size() * Math.random()));
+		return replay.get(BattleRandom.nextInt(replay.size()));
 	}
 	
 	/**
@@ -197,8 +227,8 @@ public class SelfPlay {
 		for (int i = 0; i < 20; i++) { // print out the first 20 to check
 			System.out.println("nn1 Ouput: ");
 			nn.forward_prop(data.get(i).x);
-			for (int j = 0; j < nn.nn.get(nn.LAYERS).length; j++) {
-				System.out.println(nn.nn.get(nn.LAYERS)[j].value + " ");
+			for (int j = 0; j < nn.OUTPUT; j++) {
+				System.out.println(nn.output()[j] + " ");
 			}
 			System.out.print("Expected: ");
 			System.out.println(data.get(i).y.get(0) + "\n\n");
@@ -256,10 +286,10 @@ public class SelfPlay {
 
 		System.out.println("Five Randomly Chosen Data Points:\n");
 		for(int i = 0; i < 5; i++) {
-			int index = (int)(Math.random()*250);
+			int index = BattleRandom.nextInt(250);
 			nn.forward_prop(data.get(index).x);
 			System.out.println(index + ": ");
-			System.out.println("\tOutput: " + nn.nn.get(nn.LAYERS)[0].value + " ");
+			System.out.println("\tOutput: " + nn.output()[0] + " ");
 			System.out.println("\tExpected: " + data.get(index).y.get(0));
 		}
 		
@@ -270,7 +300,7 @@ public class SelfPlay {
 		for(int i = 0; i < 250; i++) {
 			
 			nn.forward_prop(data.get(i).x);
-			double out = nn.nn.get(nn.LAYERS)[0].value;
+			double out = nn.output()[0];
 			int expected = (data.get(i).y.get(0)).intValue();
 			
 			System.out.print(i + ": " + (((int)(out*1000))/1000.0) + ", " + expected);
@@ -289,6 +319,37 @@ public class SelfPlay {
 		System.out.println("Average Error: " + (totalError/250));
 	}
 	
+	/**
+	 * Calibrate the neural network with weights saved in [weightsFilePath] for
+	 * each reduced precision, on SelfPlayData samples 0-499 and the states of the
+	 * first 500 replays, and print how much its outputs differ from the outputs
+	 * of the double weights
+	 */
+	public static void printCalibrationResults(String weightsFilePath) {
+		// Calibrate with samples 0-499 and test with samples 500-999, so that the results
+		// show how well the calibrated ranges hold for inputs they were not found from
+		List<List<Double>> calibrationInputs = new ArrayList<>();
+		List<List<Double>> testInputs = new ArrayList<>();
+		for(NeuralNet.Data d : loadSelfPlayData(0, 500)) {
+			calibrationInputs.add(d.x);
+		}
+		for(NeuralNet.Data d : loadSelfPlayData(500, 1000)) {
+			testInputs.add(d.x);
+		}
+		for(GameState gs : Replay.loadSavedStates(0, 500)) {
+			calibrationInputs.add(NeuralNet.input(gs));
+		}
+		for(GameState gs : Replay.loadSavedStates(500, 1000)) {
+			testInputs.add(NeuralNet.input(gs));
+		}
+		
+		NeuralNet nn = new NeuralNet(weightsFilePath);
+		nn.calibrate(NeuralNet.Precision.FLOAT, calibrationInputs);
+		System.out.println(nn.evaluate_precision(testInputs));
+		nn.calibrate(NeuralNet.Precision.INT8, calibrationInputs);
+		System.out.println(nn.evaluate_precision(testInputs));
+	}
+	
 	public static void main(String[] args) {
 		printValuationNetworkTestResults("ValuationNetwork/ValuationNetworkWeights.txt");
 	}
@@ -56,17 +56,6 @@ public class Simulator {
 		}
 	}
 
-	/** A message indicating what has happened over the past turn */
-	public static String message;
-
-	public static void addMessage(String s) {
-//		System.out.println(s);
-		if (message == null)
-			message= s;
-		else
-			message+= "\n" + s;
-	}
-
 	public static Scanner input;
 
 	/** Executes a single turn of battle given that player 1 selects action [a1] and player 2
@@ -81,13 +70,13 @@ public class Simulator {
 		// If any actions are switch actions, execute them first.
 		if (a1.getType() == ActionType.SWITCH) {
 			SwitchAction s1= (SwitchAction) a1;
-			addMessage(t1.activePokemon.species + " was switched with " + s1.switchTo.species);
+			BattleEvents.emit(BattleEvents.Type.SWITCH, t1.activePokemon.species, s1.switchTo.species);
 			t1.activePokemon.resetUponSwitch();
 			t1.activePokemon= s1.switchTo;
 		}
 		if (a2.getType() == ActionType.SWITCH) {
 			SwitchAction s2= (SwitchAction) a2;
-			addMessage(t2.activePokemon.species + " was switched with " + s2.switchTo.species);
+			BattleEvents.emit(BattleEvents.Type.SWITCH, t2.activePokemon.species, s2.switchTo.species);
 			t2.activePokemon.resetUponSwitch();
 			t2.activePokemon= s2.switchTo;
 		}
@@ -107,7 +96,7 @@ public class Simulator {
 			/* Player 1's pokemon can attack first if and only if:
 			 * 1) It's move is higher priority, or
 			 * 2) It's move is not lower priority and it wins out on speed. */
-			if (p1 > p2 || (p1 == p2 && ((spd1 > spd2) || (spd1 == spd2 && Math.random() < 0.5)))) {
+			if (p1 > p2 || (p1 == p2 && ((spd1 > spd2) || (spd1 == spd2 && BattleRandom.nextDouble() < 0.5)))) {
 				aa1.move.use(aa1.user, t2.activePokemon);
 				if (aa1.deductPPIndex != -1) {
 					aa1.user.pp[aa1.deductPPIndex]-- ;
@@ -166,24 +155,22 @@ public class Simulator {
 			Pokemon p= t.activePokemon;
 
 			if (p.isAlive()) {
-				if (p.status.burn || p.status.poison) {
+				if (p.status.isBurn() || p.status.isPoison()) {
 					p.currHp-= p.maxHp / 16;
-					System.out
-						.println(p.species + " was hurt by " + (p.status.burn ? "burn" : "poison") +
-							"(" + (p.maxHp / 16) + ", " + p.currHp + "/" + p.maxHp + ")");
+					BattleEvents.residualDamage(p.species, p.status.isBurn() ? Pokemon.StatusCondition.BURN : Pokemon.StatusCondition.POISON, 
+						p.maxHp / 16, p.currHp, p.maxHp);
 				}
-				if (p.status.badly_poisoned_counter > 0) {
-					p.currHp-= p.maxHp * p.status.badly_poisoned_counter / 16;
-					System.out.println(p.species + " was hurt by badly poison (" +
-						(p.maxHp * p.status.badly_poisoned_counter / 16) + ", " + p.currHp + "/" +
-						p.maxHp + ")");
-					p.status.badly_poisoned_counter++ ;
+				if (p.status.getBadlyPoisonedCounter() > 0) {
+					p.currHp-= p.maxHp * p.status.getBadlyPoisonedCounter() / 16;
+					BattleEvents.residualDamage(p.species, Pokemon.StatusCondition.BADLY_POISON, 
+						p.maxHp * p.status.getBadlyPoisonedCounter() / 16, p.currHp, p.maxHp);
+					p.status.setBadlyPoisonedCounter(p.status.getBadlyPoisonedCounter() + 1);
 				}
-				p.status.counter_damage= 0;
+				p.status.setCounterDamage(0);
 			}
 
 			if (!p.isAlive()) {
-				System.out.println(p.species + " fainted");
+				BattleEvents.emit(BattleEvents.Type.FAINTED, p.species);
 			}
 		}
 	}
@@ -224,6 +211,11 @@ public class Simulator {
 			policyNet = new NeuralNet("PolicyNetwork/PolicyNetworkWeights.txt");
 			valueNet = new NeuralNet("ValuationNetwork/ValuationNetworkWeights.txt");
 
+		// Print the events of each turn once the turn is over
+		BattleEvents events = new BattleEvents();
+		events.subscribe(e -> System.out.println(e));
+		BattleEvents.bind(events);
+
 		while (t1.hasAlive() && t2.hasAlive()) {
 			System.out.println(t1);
 			System.out.println(t2);
@@ -242,9 +234,7 @@ public class Simulator {
 				p2Action= getActionChoice(p2Actions);
 			}
 
-			Simulator.message= null;
-
-			Simulator.addMessage("Turn #" + turn);
+			BattleEvents.emit(BattleEvents.Type.TURN, null, turn);
 			executeTurn(p1Action, p2Action, t1, t2);
 
 			// Update the game state
@@ -260,11 +250,8 @@ public class Simulator {
 					p2GameState.update(null, m);
 			}
 
-			// Print and clear the current turn's message
-			System.out.println(Simulator.message);
-			Simulator.message= null;
-
 			endOfTurn(t1, t2);
+			events.flush();
 			turn++ ;
 		}
 	}
@@ -30,19 +30,19 @@ public class Team {
 		}
 		
 		// Recharge after hyperbeam
-		if(activePokemon.status.recharge) {
+		if(activePokemon.status.isRecharge()) {
 			actions.add(new Simulator.AttackAction(activePokemon, Move.getMove("RECHARGE")));
 			return actions;
 		}
 			
 		// Sky attack -> forces player to use the attack once charged
-		if(activePokemon.status.charge) {
+		if(activePokemon.status.isCharge()) {
 			actions.add(new Simulator.AttackAction(activePokemon, Move.getMove("skyattack")));
 			return actions;
 		}
 			
 		// Bide -> forces player to use the attack once charging
-		if(activePokemon.status.bide_turns_left > 0) {
+		if(activePokemon.status.getBideTurnsLeft() > 0) {
 			actions.add(new Simulator.AttackAction(activePokemon, Move.getMove("bide")));
 			return actions;
 		}
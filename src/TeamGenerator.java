@@ -1,6 +1,5 @@
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 import java.util.HashSet;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -58,8 +57,9 @@ public class TeamGenerator {
 		/* List of potential pokemon that are considered for the
 		 * team and the counter used to select them. The list is
 		 * shuffled randomly such that incrementing the counter
-		 * results in a random pokemon. */
-		ArrayList<String> pool = Pokedex.getAllSpecies();
+		 * results in a random pokemon. The pool is a copy, as the
+		 * Pokedex's list is shared by every thread. */
+		ArrayList<String> pool = new ArrayList<>(Pokedex.getAllSpecies());
 		int counter = 0;
 		
 		// initialize pool to be ready for random sampling
@@ -74,7 +74,7 @@ public class TeamGenerator {
 			 * situation is unlikely. */
 			String p_name = pool.get(counter);
 			if (pool.size() - counter == 6 - team.size()) {
-				team.add(new Pokemon(p_name, moveset(p_name), level(p_name, Pokedex.getDex().get(p_name).tier)));
+				team.add(new Pokemon(p_name, moveset(p_name), level(p_name, Pokedex.getDex().get(p_name).getTier())));
 				counter++;
 				continue;
 			}
@@ -87,9 +87,9 @@ public class TeamGenerator {
 			 * balanced team. If the tier of the selected pokemon
 			 * is not compatible with current team, select the next
 			 * random pokemon. */
-			String tier = Pokedex.getDex().get(p_name).tier;
+			String tier = Pokedex.getDex().get(p_name).getTier();
 			if (tier.equals("lc") || tier.contentEquals("nfe")) {
-				if (nuCount > 3 || (handicapped && nuCount > 2) || Math.random() * 3 < 1.0) {
+				if (nuCount > 3 || (handicapped && nuCount > 2) || BattleRandom.nextDouble() * 3 < 1.0) {
 					counter++;
 					continue;
 				}
@@ -101,7 +101,7 @@ public class TeamGenerator {
 				}
 			}
 			else {
-				if (uu.contains(tier) && (nuCount > 3 && Math.random() < 2)) {
+				if (uu.contains(tier) && (nuCount > 3 && BattleRandom.nextDouble() < 2)) {
 					counter++;
 					continue;
 				}
@@ -111,13 +111,13 @@ public class TeamGenerator {
 			boolean reject = false;
 			
 			/* Type of pokemon. */
-			Type[] types = Pokedex.getDex().get(p_name).types;
+			Type[] types = Pokedex.getDex().get(p_name).getTypes();
 			
 			/* Check the type of the pokemon to avoid stacking
 			 * multiple of the same type on the team. */
 			for (Type t : types) {
 				if (typeCount.get(t) != null) {
-					if (typeCount.get(t) > 1 || (typeCount.get(t) == 1 && Math.random() < 0.5)) {
+					if (typeCount.get(t) > 1 || (typeCount.get(t) == 1 && BattleRandom.nextDouble() < 0.5)) {
 						reject = true;
 						break;
 					}
@@ -128,7 +128,7 @@ public class TeamGenerator {
 			 * which can sweep. If the team is too susceptible,
 			 * reject the current pokemon. */
 			for (Type t : threats) {
-				if (t.effectiveness(types[0]) * t.effectiveness(types[1]) < 1.0) {
+				if (t.effectiveness(types[0], types[1]) < 1.0) {
 					continue;
 				}
 				if (weaknessCount.get(t) != null && weaknessCount.get(t) >= 2) {
@@ -176,11 +176,10 @@ public class TeamGenerator {
 	 * has the same probability of being the end result.
 	 */
 	private static void shuffle(List<String> pokedex) {
-		Random rand = new Random(System.nanoTime());
 		for (int i = 0; i < pokedex.size(); i++) {
 			// pick a random index to swap with the current index
 			String p = pokedex.get(i);
-			int swap_with = rand.nextInt(pokedex.size() - i) + i;
+			int swap_with = BattleRandom.nextInt(pokedex.size() - i) + i;
 			// execute the swap
 			pokedex.set(i, pokedex.get(swap_with));
 			pokedex.set(swap_with, p);
@@ -194,23 +193,23 @@ public class TeamGenerator {
 		Pokedex.PokedexEntry p = Pokedex.getDex().get(p_name);
 		
 		/* Either add all the 'combo-moves' or none of them. */
-		if (Math.random() < 0.5) {
-			ret.addAll(Arrays.asList(p.comboMoves));
+		if (BattleRandom.nextDouble() < 0.5) {
+			ret.addAll(p.getComboMoves());
 		}
 		/* Add exactly one exclusive move into the set if not full. */
-		if (ret.size() < 4 && p.exclusiveMoves.length > 0) {
-			int index = (int)(Math.random() * p.exclusiveMoves.length);
-			ret.add(p.exclusiveMoves[index]);
+		if (ret.size() < 4 && !p.getExclusiveMoves().isEmpty()) {
+			int index = BattleRandom.nextInt(p.getExclusiveMoves().size());
+			ret.add(p.getExclusiveMoves().get(index));
 		}
 		/* Add the essential move if set is not full. */
-		if (ret.size() < 4 && p.essentialMove != null) {
-			ret.add(p.essentialMove);
+		if (ret.size() < 4 && p.getEssentialMove() != null) {
+			ret.add(p.getEssentialMove());
 		}
 		
 		/* List of potential moves to be added into the set. The List
 		 * is shuffled such that incrementing a counter will select a
-		 * random element. */
-		List<String> movePool = Arrays.asList(p.randomBattleMoves);
+		 * random element. It is a copy, as the Pokedex entry is shared. */
+		List<String> movePool = new ArrayList<>(p.getRandomBattleMoves());
 		int counter = 0;
 		
 		// initialize move pool to be ready for random sampling
@@ -240,13 +239,13 @@ public class TeamGenerator {
 				for (int i = 0; i < ret.size(); i++) {
 					String curr = ret.get(i);
 					// Essential move always remains in the moveset if it is added
-					if (curr == p.essentialMove) {
+					if (curr == p.getEssentialMove()) {
 						continue;
 					}
 					
 					boolean rejected = false;
 					// Check for redundant moves.
-					if (p.essentialMove == null) {
+					if (p.getEssentialMove() == null) {
 						// redundant water moves
 						if (curr.equals("surf") && currentSet.contains("hydropump")) {
 							rejected = true;
@@ -4,10 +4,57 @@ public enum Type {
 	NORMAL, FIGHTING, FLYING, POISON, GROUND, ROCK, BUG, GHOST, 
 	FIRE, WATER, GRASS, ELECTRIC, PSYCHIC, ICE, DRAGON, NONE;
 	
+	/** 
+	 * Damage modifiers of each type attacking each type, indexed by 
+	 * [attacking type ordinal][defending type ordinal]
+	 */
+	private static final double[][] EFFECTIVENESS;
+	
+	/** 
+	 * Damage modifiers of each type attacking each pair of types, at index
+	 * (attacking type ordinal << 8) | (type 1 ordinal << 4) | (type 2 ordinal)
+	 */
+	private static final double[] DUAL_EFFECTIVENESS;
+	
+	static {
+		Type[] types = values();
+		EFFECTIVENESS = new double[types.length][types.length];
+		for (Type a : types) {
+			for (Type t : types) {
+				EFFECTIVENESS[a.ordinal()][t.ordinal()] = a.computeEffectiveness(t);
+			}
+		}
+		DUAL_EFFECTIVENESS = new double[types.length << 8];
+		for (Type a : types) {
+			for (Type t1 : types) {
+				for (Type t2 : types) {
+					DUAL_EFFECTIVENESS[(a.ordinal() << 8) | (t1.ordinal() << 4) | t2.ordinal()] = 
+							EFFECTIVENESS[a.ordinal()][t1.ordinal()] * EFFECTIVENESS[a.ordinal()][t2.ordinal()];
+				}
+			}
+		}
+	}
+	
 	/** 
 	 * Returns damage modifier of current type attacking type [t]. 
 	 */
 	public double effectiveness(Type t) {
+		return EFFECTIVENESS[ordinal()][t.ordinal()];
+	}
+	
+	/** 
+	 * Returns damage modifier of current type attacking a pokemon with types [t1] 
+	 * and [t2]. If the pokemon is single-typed, then [t2] must be [None].
+	 */
+	public double effectiveness(Type t1, Type t2) {
+		return DUAL_EFFECTIVENESS[(ordinal() << 8) | (t1.ordinal() << 4) | t2.ordinal()];
+	}
+	
+	/** 
+	 * Computes damage modifier of current type attacking type [t], 
+	 * which is only done once to fill EFFECTIVENESS
+	 */
+	private double computeEffectiveness(Type t) {
 		switch (this) {
 		case NORMAL:
 			if (t == ROCK) {
@@ -158,7 +205,7 @@ public enum Type {
 	public static ArrayList<Type> weaknesses(Type t1, Type t2) {
 		ArrayList<Type> ret = new ArrayList<>();
 		for (Type t: Type.values()) {
-			if (t.effectiveness(t1) * t.effectiveness(t2) > 1.0) {
+			if (t.effectiveness(t1, t2) > 1.0) {
 				ret.add(t);
 			}
 		}